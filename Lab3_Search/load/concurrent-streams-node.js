@@ -0,0 +1,93 @@
+// The scenario of load/concurrent-streams.js for machines without k6: ramps up to STREAMS
+// virtual users that each open SSE search streams one after another, holds them, and
+// ramps down (30s, 1m and 10s), then prints the same metrics as the k6 script:
+//
+//   BASE_URL=http://localhost:8083 TOKEN=<access token> STREAMS=500 node load/concurrent-streams-node.js
+const http = require('http');
+
+const BASE_URL = process.env.BASE_URL || 'http://localhost:8083';
+const STREAMS = parseInt(process.env.STREAMS || '1000');
+const QUERY = process.env.QUERY || 'patients-by-condition?condition=44054006';
+const STAGES = [
+    { duration: 30_000, target: STREAMS },
+    { duration: 60_000, target: STREAMS },
+    { duration: 10_000, target: 0 },
+];
+
+const agent = new http.Agent({ keepAlive: true, maxSockets: Infinity });
+const durations = [];
+let requests = 0;
+let failed = 0;
+let maxActive = 0;
+let active = 0;
+let target = 0;
+
+function stream() {
+    return new Promise((resolve) => {
+        const start = Date.now();
+        const request = http.get(`${BASE_URL}/${QUERY}`, {
+            agent,
+            timeout: 120_000,
+            headers: { Accept: 'text/event-stream', Authorization: `Bearer ${process.env.TOKEN}` },
+        }, (response) => {
+            let error = false;
+            response.on('data', (chunk) => {
+                if (chunk.includes('event: error') || chunk.includes('event:error')) {
+                    error = true;
+                }
+            });
+            response.on('end', () => resolve(response.statusCode === 200 && !error ? Date.now() - start : -1));
+            response.on('error', () => resolve(-1));
+        });
+        request.on('timeout', () => request.destroy());
+        request.on('error', () => resolve(-1));
+    });
+}
+
+async function virtualUser(index) {
+    while (index < target) {
+        active++;
+        maxActive = Math.max(maxActive, active);
+        const duration = await stream();
+        active--;
+        requests++;
+        if (duration < 0) {
+            failed++;
+        } else {
+            durations.push(duration);
+        }
+    }
+}
+
+async function main() {
+    const users = [];
+    let started = 0;
+    for (const stage of STAGES) {
+        const from = target;
+        const begin = Date.now();
+        while (Date.now() - begin < stage.duration) {
+            target = Math.round(from + (stage.target - from) * (Date.now() - begin) / stage.duration);
+            while (started < target) {
+                users.push(virtualUser(started++));
+            }
+            if (started > target) {
+                started = target;
+            }
+            await new Promise((resolve) => setTimeout(resolve, 100));
+        }
+        target = stage.target;
+    }
+    await Promise.all(users);
+    durations.sort((a, b) => a - b);
+    const percentile = (p) => durations.length ? durations[Math.min(durations.length - 1, Math.floor(durations.length * p))] : 0;
+    console.log(JSON.stringify({
+        streams: STREAMS,
+        completed_streams: durations.length,
+        max_concurrent_streams: maxActive,
+        stream_duration_p50_ms: percentile(0.5),
+        stream_duration_p95_ms: percentile(0.95),
+        http_req_failed: requests ? +(failed / requests).toFixed(4) : 0,
+    }));
+}
+
+main();
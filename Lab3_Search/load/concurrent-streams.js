@@ -0,0 +1,45 @@
+// Opens many concurrent SSE search streams against the Search service and reports
+// how many complete within the time limit. Run once per search.execution-mode:
+//
+//   k6 run -e BASE_URL=http://localhost:8083 -e TOKEN=<access token> -e STREAMS=2000 load/concurrent-streams.js
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter, Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8083';
+const STREAMS = parseInt(__ENV.STREAMS || '1000');
+const QUERY = __ENV.QUERY || 'patients-by-condition?condition=44054006';
+
+const completedStreams = new Counter('completed_streams');
+const streamDuration = new Trend('stream_duration', true);
+
+export const options = {
+    scenarios: {
+        streams: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: STREAMS },
+                { duration: '1m', target: STREAMS },
+                { duration: '10s', target: 0 },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export default function () {
+    const response = http.get(`${BASE_URL}/${QUERY}`, {
+        headers: {
+            Accept: 'text/event-stream',
+            Authorization: `Bearer ${__ENV.TOKEN}`,
+        },
+        timeout: '120s',
+    });
+    if (check(response, { 'stream completed': (r) => r.status === 200 })) {
+        completedStreams.add(1);
+        streamDuration.add(response.timings.duration);
+    }
+}
@@ -0,0 +1,57 @@
+// A stand-in for the HAPI server, for running load/concurrent-streams.js without HAPI.
+// Every search answers with PAGES pages of PAGE_SIZE Condition entries, each with its
+// included Patient, after LATENCY_MS milliseconds per page:
+//
+//   PORT=9090 PAGES=3 PAGE_SIZE=50 LATENCY_MS=200 node load/stub-hapi.js
+//
+// and start the Search service with -Dsearch.hapi.url=http://localhost:9090/fhir.
+const http = require('http');
+
+const PORT = parseInt(process.env.PORT || '9090');
+const PAGES = parseInt(process.env.PAGES || '3');
+const PAGE_SIZE = parseInt(process.env.PAGE_SIZE || '50');
+const LATENCY_MS = parseInt(process.env.LATENCY_MS || '200');
+
+function page(index) {
+    const entry = [];
+    for (let i = 0; i < PAGE_SIZE; i++) {
+        const id = index * PAGE_SIZE + i;
+        entry.push({
+            resource: {
+                resourceType: 'Condition',
+                id: `c${id}`,
+                code: { coding: [{ system: 'http://snomed.info/sct', code: '44054006' }] },
+                subject: { reference: `Patient/p${id}` },
+            },
+            search: { mode: 'match' },
+        });
+        entry.push({
+            resource: {
+                resourceType: 'Patient',
+                id: `p${id}`,
+                identifier: [{ system: 'http://electronichealth.se/identifier/personnummer', value: `19900101-${id}` }],
+                name: [{ family: `Patient${id}`, given: ['Load'] }],
+                gender: id % 2 === 0 ? 'female' : 'male',
+                telecom: [{ system: 'email', value: `patient${id}@example.com` }],
+                address: [{ line: [`Street ${id}`], city: 'Stockholm', postalCode: '11122' }],
+            },
+            search: { mode: 'include' },
+        });
+    }
+    const bundle = { resourceType: 'Bundle', type: 'searchset', total: PAGES * PAGE_SIZE, entry };
+    if (index + 1 < PAGES) {
+        bundle.link = [{ relation: 'next', url: `http://localhost:${PORT}/fhir?_getpages=load&_getpagesoffset=${(index + 1) * PAGE_SIZE}` }];
+    }
+    return JSON.stringify(bundle);
+}
+
+const pages = Array.from({ length: PAGES }, (_, index) => page(index));
+
+http.createServer((request, response) => {
+    const offset = parseInt(new URL(request.url, `http://localhost:${PORT}`).searchParams.get('_getpagesoffset') || '0');
+    const body = pages[Math.min(PAGES - 1, Math.floor(offset / PAGE_SIZE))];
+    setTimeout(() => {
+        response.writeHead(200, { 'Content-Type': 'application/fhir+json', 'Content-Length': Buffer.byteLength(body) });
+        response.end(body);
+    }, LATENCY_MS);
+}).listen(PORT, () => console.log(`Stub HAPI listening on http://localhost:${PORT}/fhir`));
@@ -0,0 +1,65 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.api.IClientInterceptor;
+import ca.uhn.fhir.rest.client.api.IHttpRequest;
+import ca.uhn.fhir.rest.client.api.IHttpResponse;
+import ca.uhn.fhir.rest.client.apache.ApacheHttpRequest;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.function.Supplier;
+
+/**
+ * A handle for aborting a blocking HAPI client call from another thread. The generic client does not expose the
+ * HTTP request it sends, so {@link #INTERCEPTOR}, registered on the client, hands the Apache request of a call made
+ * within {@link #run} to its handle. {@link #abort()} then aborts that request, which closes its connection and
+ * makes the blocked call fail, instead of waiting for a response nobody reads.
+ */
+public final class AbortableCall {
+    private static final ThreadLocal<AbortableCall> CURRENT = new ThreadLocal<>();
+
+    static final IClientInterceptor INTERCEPTOR = new IClientInterceptor() {
+        @Override
+        public void interceptRequest(IHttpRequest request) {
+            AbortableCall call = CURRENT.get();
+            if (call != null && request instanceof ApacheHttpRequest apacheRequest) {
+                call.started(apacheRequest.getApacheRequest());
+            }
+        }
+
+        @Override
+        public void interceptResponse(IHttpResponse response) {
+        }
+    };
+
+    private volatile HttpRequestBase request;
+    private volatile boolean aborted;
+
+    public <T> T run(Supplier<T> call) {
+        CURRENT.set(this);
+        try {
+            return call.get();
+        } finally {
+            CURRENT.remove();
+            request = null;
+        }
+    }
+
+    public void abort() {
+        aborted = true;
+        HttpRequestBase running = request;
+        if (running != null) {
+            running.abort();
+        }
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    private void started(HttpRequestBase request) {
+        this.request = request;
+        if (aborted) {
+            request.abort();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package journal.Core;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.QueryParam;
+
+@RolesAllowed("admin")
+@Path("/admin")
+public class AdminController {
+
+    @Inject
+    SearchResultCache resultCache;
+
+    @DELETE
+    @Path("search-cache")
+    public void invalidateSearchCache(@QueryParam("endpoint") String endpoint) {
+        if (endpoint == null) {
+            resultCache.invalidateAll();
+        } else {
+            resultCache.invalidate(endpoint);
+        }
+    }
+}
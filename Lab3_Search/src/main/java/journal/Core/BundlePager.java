@@ -0,0 +1,124 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import io.opentelemetry.context.Context;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.ResourceType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Walks the next links of a search result as a {@link Multi} of pages, loading up to
+ * {@code prefetch} pages ahead of the page currently requested by the subscriber.
+ * Pages are only loaded on demand. Once the subscriber cancels, prefetched pages
+ * that have not started yet are skipped instead of being fetched from HAPI, and a page
+ * that is being loaded is aborted through its {@link AbortableCall}.
+ */
+public class BundlePager {
+    private final IGenericClient client;
+    private final int prefetch;
+    private final Executor executor;
+    private final SearchMetrics metrics;
+    private final SearchTracing tracing;
+    private final HapiLimiter limiter;
+    private final ResourceType resourceType;
+
+    public BundlePager(IGenericClient client, int prefetch) {
+        this(client, prefetch, Infrastructure.getDefaultWorkerPool());
+    }
+
+    public BundlePager(IGenericClient client, int prefetch, Executor executor) {
+        this(client, prefetch, executor, SearchMetrics.NONE, SearchTracing.NONE, HapiLimiter.NONE, ResourceType.Bundle);
+    }
+
+    public BundlePager(IGenericClient client, int prefetch, Executor executor, SearchMetrics metrics, SearchTracing tracing,
+                       HapiLimiter limiter, ResourceType resourceType) {
+        this.client = client;
+        this.prefetch = Math.max(0, prefetch);
+        this.executor = executor;
+        this.metrics = metrics;
+        this.tracing = tracing;
+        this.limiter = limiter;
+        this.resourceType = resourceType;
+    }
+
+    public Multi<Bundle> pages(Bundle first) {
+        return Multi.createFrom().deferred(() -> {
+                    PageQueue queue = new PageQueue(first);
+                    return Multi.createBy().repeating()
+                            .completionStage(() -> queue, PageQueue::next)
+                            .whilst(BundlePager::hasNext)
+                            .onCancellation().invoke(queue::cancel);
+                })
+                .plug(pages -> metrics.pages(resourceType, pages));
+    }
+
+    private static boolean hasNext(Bundle bundle) {
+        return bundle != null && bundle.getLink(Bundle.LINK_NEXT) != null;
+    }
+
+    private class PageQueue {
+        private final Deque<CompletableFuture<Bundle>> pages = new ArrayDeque<>();
+        private final Executor pageExecutor = Context.current().wrap(executor);
+        private final AbortableCall call = new AbortableCall();
+        private CompletableFuture<Bundle> tail;
+        private int scheduled;
+        private volatile boolean cancelled;
+
+        PageQueue(Bundle first) {
+            tail = CompletableFuture.completedFuture(first);
+            pages.add(tail);
+        }
+
+        CompletableFuture<Bundle> next() {
+            if (pages.isEmpty()) {
+                schedule();
+            }
+            CompletableFuture<Bundle> page = pages.poll();
+            while (pages.size() < prefetch) {
+                if (!schedule()) {
+                    break;
+                }
+            }
+            return page;
+        }
+
+        private boolean schedule() {
+            if (tail.isDone() && !tail.isCompletedExceptionally() && !hasNext(tail.join())) {
+                return false;
+            }
+            int page = ++scheduled;
+            tail = tail.thenApplyAsync(previous -> hasNext(previous) && !cancelled ? load(previous, page) : null, pageExecutor);
+            pages.add(tail);
+            return true;
+        }
+
+        private Bundle load(Bundle previous, int page) {
+            HapiLimiter.Permit permit = limiter.acquire(resourceType);
+            long start = System.nanoTime();
+            try {
+                Bundle bundle = call.run(() -> tracing.trace(FhirOperation.Next, resourceType, page,
+                        () -> metrics.time(FhirOperation.Next, resourceType, () -> client.loadPage().next(previous).execute())));
+                permit.complete(System.nanoTime() - start);
+                return bundle;
+            } catch (RuntimeException e) {
+                if (call.isAborted()) {
+                    permit.cancel();
+                } else {
+                    permit.fail(System.nanoTime() - start, e);
+                }
+                throw e;
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            call.abort();
+        }
+    }
+}
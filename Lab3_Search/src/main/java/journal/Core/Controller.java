@@ -1,16 +1,41 @@
 package journal.Core;
 
+import io.opentelemetry.context.Context;
+import io.quarkus.logging.Log;
 import io.quarkus.security.Authenticated;
-import io.smallrye.common.annotation.Blocking;
+import io.quarkus.vertx.http.Compressed;
 import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import io.vertx.mutiny.core.buffer.Buffer;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
-import journal.Core.Model.PatientData;
-import journal.Core.Model.PractitionerData;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import journal.Core.Model.CompactJsonList;
+import journal.Core.Model.CompactPatientList;
+import journal.Core.Model.Suggestion;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.RestResponse;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
+import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 @Authenticated
 @Path("/")
@@ -19,48 +44,289 @@ public class Controller {
     @Inject
     HealthService healthService;
 
+    @Inject
+    ReactiveHealthService reactiveHealthService;
+
+    @Inject
+    SearchExecutor searchExecutor;
+
+    @Inject
+    SearchMetrics metrics;
+
+    @Inject
+    SearchCoalescer coalescer;
+
+    @Inject
+    SearchResultCache resultCache;
+
+    @Inject
+    SearchEventWriter eventWriter;
+
+    @Inject
+    SuggestIndex suggestIndex;
+
+    @Inject
+    Sse sse;
+
+    @ConfigProperty(name = "search.batch.max-size", defaultValue = "1000")
+    int maxBatchSize;
+
+    @ConfigProperty(name = "search.batch.window", defaultValue = "250ms")
+    Duration defaultBatchWindow;
+
+    @ConfigProperty(name = "search.batch.max-pending", defaultValue = "16")
+    int maxPendingBatches;
+
+    @ConfigProperty(name = "search.suggest.limit", defaultValue = "10")
+    int defaultSuggestLimit;
+
+    @ConfigProperty(name = "search.suggest.max-limit", defaultValue = "50")
+    int maxSuggestLimit;
+
+    @ConfigProperty(name = "search.suggest.min-length", defaultValue = "2")
+    int suggestMinLength;
+
+    @ConfigProperty(name = "search.suggest.debounce", defaultValue = "150ms")
+    Duration suggestDebounce;
+
+    @ConfigProperty(name = "search.suggest.record-searches", defaultValue = "true")
+    boolean recordSuggestions;
+
+    private static final Projection SUGGEST_PATIENT_FIELDS = Projection.parse("id,fullName", Projection.PATIENT);
+    private static final Projection SUGGEST_PRACTITIONER_FIELDS = Projection.parse("id,fullName", Projection.PRACTITIONER);
+
     @GET
-    @Blocking
     @Path("patients-by-name")
     @Produces(MediaType.SERVER_SENT_EVENTS)
-    public Multi<PatientData> getPatientsByName(@QueryParam("name") String name) {
-        return healthService.getPatientsByName(name)
-                .onItem().transform(patient -> healthService.getPatientData(patient));
+    public Multi<OutboundSseEvent> getPatientsByName(@QueryParam("name") String name, @QueryParam("fields") String fields,
+                                           @QueryParam("batch") @DefaultValue("1") int batch, @QueryParam("batchWindowMs") Long batchWindowMs) {
+        Projection projection = Projection.parse(fields, Projection.PATIENT);
+        return sse(batch(searchPatients("patients-by-name", projection, service -> service.getPatientsByName(name, projection),
+                SearchResultCache.normalize(name)), batch, batchWindowMs));
     }
 
     @GET
-    @Blocking
     @Path("practitioner-patients-by-name")
     @Produces(MediaType.SERVER_SENT_EVENTS)
-    public Multi<PatientData> getPractitionerPatientsByName(@QueryParam("name") String name, @QueryParam("practitioner") String practitioner) {
-        return healthService.getPatientsByNameAndPractitionerIdentifier(name, practitioner)
-                .onItem().transform(patient -> healthService.getPatientData(patient));
+    public Multi<OutboundSseEvent> getPractitionerPatientsByName(@QueryParam("name") String name, @QueryParam("practitioner") String practitioner,
+                                                       @QueryParam("fields") String fields,
+                                                       @QueryParam("batch") @DefaultValue("1") int batch, @QueryParam("batchWindowMs") Long batchWindowMs) {
+        Projection projection = Projection.parse(fields, Projection.PATIENT);
+        return sse(batch(searchPatients("practitioner-patients-by-name", projection, service -> service.getPatientsByNameAndPractitionerIdentifier(name, practitioner, projection),
+                SearchResultCache.normalize(name), practitioner), batch, batchWindowMs));
     }
 
     @GET
-    @Blocking
     @Path("patients-by-condition")
     @Produces(MediaType.SERVER_SENT_EVENTS)
-    public Multi<PatientData> getPatientsByCondition(@QueryParam("condition") String condition) {
-        return healthService.getPatientsByConditionCode(condition)
-                .onItem().transform(patient -> healthService.getPatientData(patient));
+    public Multi<OutboundSseEvent> getPatientsByCondition(@QueryParam("condition") List<String> condition, @QueryParam("fields") String fields,
+                                                @QueryParam("batch") @DefaultValue("1") int batch, @QueryParam("batchWindowMs") Long batchWindowMs) {
+        List<String> codes = conditionCodes(condition);
+        Projection projection = Projection.parse(fields, Projection.PATIENT);
+        return sse(batch(searchPatients("patients-by-condition", projection, service -> service.getPatientsByConditionCodes(codes, projection),
+                String.join(",", codes)), batch, batchWindowMs));
     }
 
     @GET
-    @Blocking
     @Path("practitioner-patients-by-condition")
     @Produces(MediaType.SERVER_SENT_EVENTS)
-    public Multi<PatientData> getPractitionerPatientsByCondition(@QueryParam("condition") String condition, @QueryParam("practitioner") String practitioner) {
-        return healthService.getPatientsByConditionCodeAndPractitionerIdentifier(condition, practitioner)
-                .onItem().transform(patient -> healthService.getPatientData(patient));
+    public Multi<OutboundSseEvent> getPractitionerPatientsByCondition(@QueryParam("condition") List<String> condition, @QueryParam("practitioner") String practitioner,
+                                                            @QueryParam("fields") String fields,
+                                                            @QueryParam("batch") @DefaultValue("1") int batch, @QueryParam("batchWindowMs") Long batchWindowMs) {
+        List<String> codes = conditionCodes(condition);
+        Projection projection = Projection.parse(fields, Projection.PATIENT);
+        return sse(batch(searchPatients("practitioner-patients-by-condition", projection, service -> service.getPatientsByConditionCodesAndPractitionerIdentifier(codes, practitioner, projection),
+                String.join(",", codes), practitioner), batch, batchWindowMs));
     }
 
     @GET
-    @Blocking
     @Path("practitioners-by-name")
     @Produces(MediaType.SERVER_SENT_EVENTS)
-    public Multi<PractitionerData> getPractitionersByName(@QueryParam("name") String name) {
-        return healthService.getPractitionersByName(name)
-                .onItem().transform(practitioner -> healthService.getPractitionerData(practitioner));
+    public Multi<OutboundSseEvent> getPractitionersByName(@QueryParam("name") String name, @QueryParam("fields") String fields,
+                                                @QueryParam("batch") @DefaultValue("1") int batch, @QueryParam("batchWindowMs") Long batchWindowMs) {
+        Projection projection = Projection.parse(fields, Projection.PRACTITIONER);
+        Function<SearchService, Multi<Practitioner>> search = service -> service.getPractitionersByName(name, projection);
+        if (recordSuggestions && projection.has(Projection.Field.Id) && projection.has(Projection.Field.FullName)) {
+            search = search.andThen(practitioners -> practitioners.onItem().invoke(suggestIndex::put));
+        }
+        return sse(batch(search("practitioners-by-name", projection, search,
+                practitioner -> eventWriter.writePractitioner(practitioner, projection, healthService::getRole), SearchResultCache::weigh,
+                CompactJsonList::of, SearchResultCache.normalize(name)), batch, batchWindowMs));
+    }
+
+    /**
+     * Typeahead over patient and practitioner names, answered from the {@link SuggestIndex} as one JSON array.
+     * When the index has fewer than {@code limit} matches, a single bounded HAPI search fills it in after the
+     * debounce delay. A request cancelled before then, usually by the next keystroke, never reaches HAPI.
+     */
+    @GET
+    @Path("suggest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<List<Suggestion>> suggest(@QueryParam("q") String query, @QueryParam("type") List<String> type,
+                                         @QueryParam("limit") Integer limit) {
+        Set<Suggestion.Type> types = suggestionTypes(type);
+        int suggestLimit = limit != null ? Math.max(1, Math.min(limit, maxSuggestLimit)) : defaultSuggestLimit;
+        List<Suggestion> suggestions = suggestIndex.suggest(query, types, suggestLimit);
+        if (suggestions.size() >= suggestLimit || SuggestIndex.normalize(query).length() < suggestMinLength) {
+            return Uni.createFrom().item(suggestions);
+        }
+
+        return Uni.createFrom().voidItem()
+                .onItem().delayIt().by(suggestDebounce)
+                .onItem().transformToUni(ignored -> fillSuggestions(query.trim(), types, suggestLimit))
+                .onItem().transform(ignored -> suggestIndex.suggest(query, types, suggestLimit))
+                .onFailure().recoverWithItem(failure -> {
+                    Log.warnf("Suggestion search for '%s' failed, answering from the index: %s", query, failure.getMessage());
+                    return suggestions;
+                });
+    }
+
+    private Uni<List<Void>> fillSuggestions(String name, Set<Suggestion.Type> types, int limit) {
+        List<Uni<Void>> searches = new ArrayList<>();
+        if (types.contains(Suggestion.Type.Patient)) {
+            searches.add(execute(service -> service.getPatientsByName(name, SUGGEST_PATIENT_FIELDS))
+                    .select().first(limit)
+                    .onItem().invoke(patient -> suggestIndex.put(patient))
+                    .onItem().ignoreAsUni());
+        }
+        if (types.contains(Suggestion.Type.Practitioner)) {
+            searches.add(execute(service -> service.getPractitionersByName(name, SUGGEST_PRACTITIONER_FIELDS))
+                    .select().first(limit)
+                    .onItem().invoke(practitioner -> suggestIndex.put(practitioner))
+                    .onItem().ignoreAsUni());
+        }
+        return Uni.join().all(searches).andFailFast();
+    }
+
+    private static Set<Suggestion.Type> suggestionTypes(List<String> types) {
+        if (types == null || types.isEmpty()) {
+            return EnumSet.allOf(Suggestion.Type.class);
+        }
+        EnumSet<Suggestion.Type> selected = EnumSet.noneOf(Suggestion.Type.class);
+        for (String type : types) {
+            selected.add(Arrays.stream(Suggestion.Type.values())
+                    .filter(candidate -> candidate.name().equalsIgnoreCase(type.trim()))
+                    .findFirst()
+                    .orElseThrow(() -> new BadRequestException("Unknown suggestion type '" + type + "'")));
+        }
+        return selected;
+    }
+
+    @GET
+    @Path("export/patients-by-name")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @Compressed
+    public Multi<Buffer> exportPatientsByName(@QueryParam("name") String name, @QueryParam("fields") String fields) {
+        Projection projection = Projection.parse(fields, Projection.PATIENT);
+        return ndjson(searchPatients("export/patients-by-name", projection, service -> service.getPatientsByName(name, projection),
+                SearchResultCache.normalize(name)));
+    }
+
+    @GET
+    @Path("export/practitioner-patients-by-name")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @Compressed
+    public Multi<Buffer> exportPractitionerPatientsByName(@QueryParam("name") String name, @QueryParam("practitioner") String practitioner,
+                                                          @QueryParam("fields") String fields) {
+        Projection projection = Projection.parse(fields, Projection.PATIENT);
+        return ndjson(searchPatients("export/practitioner-patients-by-name", projection, service -> service.getPatientsByNameAndPractitionerIdentifier(name, practitioner, projection),
+                SearchResultCache.normalize(name), practitioner));
+    }
+
+    @GET
+    @Path("export/patients-by-condition")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @Compressed
+    public Multi<Buffer> exportPatientsByCondition(@QueryParam("condition") List<String> condition, @QueryParam("fields") String fields) {
+        List<String> codes = conditionCodes(condition);
+        Projection projection = Projection.parse(fields, Projection.PATIENT);
+        return ndjson(searchPatients("export/patients-by-condition", projection, service -> service.getPatientsByConditionCodes(codes, projection),
+                String.join(",", codes)));
+    }
+
+    @GET
+    @Path("export/practitioner-patients-by-condition")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @Compressed
+    public Multi<Buffer> exportPractitionerPatientsByCondition(@QueryParam("condition") List<String> condition, @QueryParam("practitioner") String practitioner,
+                                                               @QueryParam("fields") String fields) {
+        List<String> codes = conditionCodes(condition);
+        Projection projection = Projection.parse(fields, Projection.PATIENT);
+        return ndjson(searchPatients("export/practitioner-patients-by-condition", projection, service -> service.getPatientsByConditionCodesAndPractitionerIdentifier(codes, practitioner, projection),
+                String.join(",", codes), practitioner));
+    }
+
+    private static List<String> conditionCodes(List<String> conditions) {
+        List<String> codes = conditions.stream()
+                .flatMap(condition -> Arrays.stream(condition.split(",")))
+                .map(String::trim)
+                .filter(code -> !code.isEmpty())
+                .distinct()
+                .sorted()
+                .toList();
+        if (codes.isEmpty()) {
+            throw new BadRequestException("At least one condition code is required");
+        }
+        return codes;
+    }
+
+    private static Multi<Buffer> ndjson(Multi<String> events) {
+        return events.onItem().transform(Buffer::buffer);
+    }
+
+    @ServerExceptionMapper
+    public RestResponse<String> mapSearchRejected(SearchRejectedException e) {
+        return RestResponse.ResponseBuilder.create(RestResponse.Status.SERVICE_UNAVAILABLE, e.getMessage())
+                .header("Retry-After", "1")
+                .build();
+    }
+
+    private Multi<OutboundSseEvent> sse(Multi<String> events) {
+        return events.onItem().transform(json -> sse.newEventBuilder().data(json).build())
+                .onFailure(SearchRejectedException.class).recoverWithItem(failure -> sse.newEventBuilder()
+                        .name("error")
+                        .data(eventWriter.writeError("overloaded", failure.getMessage()))
+                        .build())
+                .onFailure(BackPressureFailure.class).recoverWithItem(failure -> sse.newEventBuilder()
+                        .name("error")
+                        .data(eventWriter.writeError("too-slow", "The client did not keep up with " + maxPendingBatches + " pending batches"))
+                        .build());
+    }
+
+    private Multi<String> batch(Multi<String> events, int batch, Long batchWindowMs) {
+        if (batch <= 1) {
+            return events;
+        }
+        Duration batchWindow = batchWindowMs != null ? Duration.ofMillis(Math.max(1, batchWindowMs)) : defaultBatchWindow;
+        return events.group().intoLists().of(Math.min(batch, maxBatchSize), batchWindow)
+                .onOverflow().buffer(maxPendingBatches)
+                .onItem().transform(jsonEvents -> "[" + String.join(",", jsonEvents) + "]");
+    }
+
+    private Multi<String> searchPatients(String endpoint, Projection fields, Function<SearchService, Multi<Patient>> search, String... parameters) {
+        if (recordSuggestions && fields.has(Projection.Field.Id) && fields.has(Projection.Field.FullName)) {
+            search = search.andThen(patients -> patients.onItem().invoke(patient -> suggestIndex.put(patient)));
+        }
+        if (!resultCache.isEnabled()) {
+            return search(endpoint, fields, search, patient -> eventWriter.writePatient(patient, fields), json -> 0, List::copyOf, parameters);
+        }
+        return search(endpoint, fields, search, patient -> healthService.getPatientData(patient, fields), SearchResultCache::weigh,
+                CompactPatientList::of, parameters)
+            .onItem().transform(patient -> eventWriter.write(patient, fields));
+    }
+
+    private <R, T> Multi<T> search(String endpoint, Projection fields, Function<SearchService, Multi<R>> search, Function<R, T> mapper,
+                                   ToLongFunction<T> weigher, Function<List<T>, List<T>> compactor, String... parameters) {
+        String key = SearchResultCache.key(endpoint, parameters) + "&fields=" + fields;
+        return metrics.stream(endpoint, coalescer.coalesce(key, () -> resultCache.stream(key, weigher, compactor,
+                () -> execute(search).onItem().transform(mapper))));
+    }
+
+    private <R> Multi<R> execute(Function<SearchService, Multi<R>> search) {
+        return switch (searchExecutor.getExecutionMode()) {
+            case Reactive -> search.apply(reactiveHealthService);
+            case Worker, VirtualThread -> search.apply(healthService)
+                    .runSubscriptionOn(Context.current().wrap(searchExecutor.getExecutor()));
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,5 @@
+package journal.Core;
+
+public enum ExecutionMode {
+    Reactive, Worker, VirtualThread
+}
@@ -0,0 +1,143 @@
+package journal.Core;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.http.HttpClient;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@ApplicationScoped
+public class FhirClientFactory {
+    static final String HAPI_SERVER_URL = "https://hapi-fhir.app.cloud.cbh.kth.se/fhir";
+
+    @ConfigProperty(name = "search.hapi.url", defaultValue = HAPI_SERVER_URL)
+    String serverUrl;
+
+    @ConfigProperty(name = "search.hapi.pool.max-total", defaultValue = "200")
+    int maxTotal;
+
+    @ConfigProperty(name = "search.hapi.pool.max-per-route", defaultValue = "100")
+    int maxPerRoute;
+
+    @ConfigProperty(name = "search.hapi.connect-timeout", defaultValue = "5s")
+    Duration connectTimeout;
+
+    @ConfigProperty(name = "search.hapi.socket-timeout", defaultValue = "30s")
+    Duration socketTimeout;
+
+    @ConfigProperty(name = "search.hapi.keep-alive", defaultValue = "60s")
+    Duration keepAlive;
+
+    @ConfigProperty(name = "search.hapi.idle-timeout", defaultValue = "60s")
+    Duration idleTimeout;
+
+    @ConfigProperty(name = "search.hapi.gzip", defaultValue = "true")
+    boolean gzip;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+
+    @Produces
+    @Singleton
+    FhirContext fhirContext() {
+        return FhirContext.forR4();
+    }
+
+    @Produces
+    @Singleton
+    CloseableHttpClient httpClient(MeterRegistry registry) {
+        connectionManager = new PoolingHttpClientConnectionManager(keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout((int) connectTimeout.toMillis())
+                        .setConnectionRequestTimeout((int) connectTimeout.toMillis())
+                        .setSocketTimeout((int) socketTimeout.toMillis())
+                        .build())
+                .setKeepAliveStrategy((response, httpContext) -> {
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, httpContext);
+                    return duration > 0 ? Math.min(duration, keepAlive.toMillis()) : keepAlive.toMillis();
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (!gzip) {
+            builder.disableContentCompression();
+        }
+        httpClient = builder.build();
+
+        Gauge.builder("hapi.client.pool.leased", connectionManager, pool -> pool.getTotalStats().getLeased())
+                .description("Connections to HAPI currently in use")
+                .register(registry);
+        Gauge.builder("hapi.client.pool.available", connectionManager, pool -> pool.getTotalStats().getAvailable())
+                .description("Idle pooled connections to HAPI")
+                .register(registry);
+        Gauge.builder("hapi.client.pool.pending", connectionManager, pool -> pool.getTotalStats().getPending())
+                .description("Requests waiting for a HAPI connection")
+                .register(registry);
+        Gauge.builder("hapi.client.pool.max", connectionManager, pool -> pool.getTotalStats().getMax())
+                .description("Maximum number of connections to HAPI")
+                .register(registry);
+        return httpClient;
+    }
+
+    @Produces
+    @Singleton
+    IGenericClient genericClient(FhirContext context, CloseableHttpClient httpClient, SearchTracing tracing) {
+        context.getRestfulClientFactory().setHttpClient(httpClient);
+        context.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+        IGenericClient client = context.newRestfulGenericClient(serverUrl);
+        client.registerInterceptor(tracing);
+        client.registerInterceptor(AbortableCall.INTERCEPTOR);
+        return client;
+    }
+
+    /**
+     * Creates a Vert.x HTTP client with the same limits as the Apache pool. Vert.x pools connections per host only, and
+     * every request goes to the HAPI server, so the pool is sized by the smaller of max-per-route and max-total.
+     * Connections that stay idle longer than idle-timeout are closed, and reads that stall longer than
+     * socket-timeout fail the request.
+     */
+    public HttpClient createHttpClient(Vertx vertx) {
+        HttpClientOptions options = new HttpClientOptions()
+                .setMaxPoolSize(Math.min(maxPerRoute, maxTotal))
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setKeepAlive(true)
+                .setKeepAliveTimeout((int) keepAlive.toSeconds())
+                .setDecompressionSupported(gzip);
+        options.setIdleTimeoutUnit(TimeUnit.MILLISECONDS)
+                .setIdleTimeout((int) idleTimeout.toMillis())
+                .setReadIdleTimeout((int) socketTimeout.toMillis());
+        return vertx.createHttpClient(options);
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+}
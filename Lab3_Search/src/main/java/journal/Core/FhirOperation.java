@@ -0,0 +1,18 @@
+package journal.Core;
+
+public enum FhirOperation {
+    Search("search"),
+    Next("next"),
+    PractitionerLookup("practitioner-lookup"),
+    RoleLookup("role-lookup");
+
+    private final String tag;
+
+    FhirOperation(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
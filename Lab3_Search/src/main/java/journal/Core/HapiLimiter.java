@@ -0,0 +1,206 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hl7.fhir.r4.model.ResourceType;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limits for requests to HAPI, with a separate bulkhead per HAPI resource endpoint, such as
+ * {@code [base]/Patient} or {@code [base]/Condition}. The bulkheads are keyed by resource type rather than by the
+ * SSE endpoint that sent the request: searches of one resource type load the same HAPI tables, and practitioner
+ * and role lookups are cached and shared between SSE endpoints.
+ * Each limit grows by one while requests finish under the latency threshold and shrinks by the backoff
+ * ratio when one is slower or fails with an overload error (AIMD). Requests over the limit are rejected
+ * at once with a {@link SearchRejectedException} instead of queueing on a slow server.
+ */
+@ApplicationScoped
+public class HapiLimiter {
+    static final HapiLimiter NONE = new HapiLimiter(new CompositeMeterRegistry(), false, 1, 1, 1, 1.0, Duration.ZERO);
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final ConcurrentMap<ResourceType, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @Inject
+    public HapiLimiter(MeterRegistry registry,
+                       @ConfigProperty(name = "search.limiter.enabled", defaultValue = "true") boolean enabled,
+                       @ConfigProperty(name = "search.limiter.initial-limit", defaultValue = "20") int initialLimit,
+                       @ConfigProperty(name = "search.limiter.min-limit", defaultValue = "2") int minLimit,
+                       @ConfigProperty(name = "search.limiter.max-limit", defaultValue = "100") int maxLimit,
+                       @ConfigProperty(name = "search.limiter.backoff-ratio", defaultValue = "0.9") double backoffRatio,
+                       @ConfigProperty(name = "search.limiter.latency-threshold", defaultValue = "5s") Duration latencyThreshold) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.initialLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+    }
+
+    public <T> T call(ResourceType resourceType, Supplier<T> request) {
+        Permit permit = acquire(resourceType);
+        long start = System.nanoTime();
+        try {
+            T result = request.get();
+            permit.complete(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            permit.fail(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    public <T> Uni<T> call(ResourceType resourceType, Uni<T> request) {
+        if (!enabled) {
+            return request;
+        }
+        return Uni.createFrom().deferred(() -> {
+            Permit permit = acquire(resourceType);
+            long start = System.nanoTime();
+            return request
+                    .onItem().invoke(() -> permit.complete(System.nanoTime() - start))
+                    .onFailure().invoke(failure -> permit.fail(System.nanoTime() - start, failure))
+                    .onCancellation().invoke(permit::cancel);
+        });
+    }
+
+    /**
+     * Takes a permit for a request whose response is consumed after the call returns, such as a page that is
+     * parsed while it is streamed. The caller reports how the request ended through the permit; until then it
+     * counts against the limit.
+     *
+     * @throws SearchRejectedException if the limit has been reached
+     */
+    public Permit acquire(ResourceType resourceType) {
+        if (!enabled) {
+            return new Permit(null);
+        }
+        Bulkhead bulkhead = bulkhead(resourceType);
+        bulkhead.acquire();
+        return new Permit(bulkhead);
+    }
+
+    int limit(ResourceType resourceType) {
+        return (int) bulkhead(resourceType).limit;
+    }
+
+    int inFlight(ResourceType resourceType) {
+        return bulkhead(resourceType).inFlight;
+    }
+
+    private Bulkhead bulkhead(ResourceType resourceType) {
+        return bulkheads.computeIfAbsent(resourceType, Bulkhead::new);
+    }
+
+    private static boolean isOverload(Throwable failure) {
+        if (failure instanceof BaseServerResponseException response) {
+            return response.getStatusCode() >= 500 || response.getStatusCode() == 429;
+        }
+        return true;
+    }
+
+    /**
+     * A request counted against the limit. Only the first of {@link #complete}, {@link #fail} and {@link #cancel}
+     * has an effect.
+     */
+    public static final class Permit {
+        private final Bulkhead bulkhead;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        public void complete(long latencyNanos) {
+            if (bulkhead != null && released.compareAndSet(false, true)) {
+                bulkhead.release(latencyNanos, false);
+            }
+        }
+
+        public void fail(long latencyNanos, Throwable failure) {
+            if (bulkhead != null && released.compareAndSet(false, true)) {
+                bulkhead.release(latencyNanos, failure);
+            }
+        }
+
+        /**
+         * Releases the permit without adjusting the limit, for a request abandoned by its caller.
+         */
+        public void cancel() {
+            if (bulkhead != null && released.compareAndSet(false, true)) {
+                bulkhead.ignore();
+            }
+        }
+    }
+
+    private class Bulkhead {
+        private final ResourceType resourceType;
+        private final Counter rejected;
+        private volatile double limit = initialLimit;
+        private volatile int inFlight;
+
+        Bulkhead(ResourceType resourceType) {
+            this.resourceType = resourceType;
+            this.rejected = Counter.builder("hapi.client.rejected")
+                    .description("HAPI requests rejected because the concurrency limit was reached")
+                    .tag("resource", resourceType.name())
+                    .register(registry);
+            Gauge.builder("hapi.client.limit", this, bulkhead -> bulkhead.limit)
+                    .description("Current adaptive concurrency limit for HAPI requests")
+                    .tag("resource", resourceType.name())
+                    .register(registry);
+            Gauge.builder("hapi.client.in-flight", this, bulkhead -> bulkhead.inFlight)
+                    .description("HAPI requests currently in flight")
+                    .tag("resource", resourceType.name())
+                    .register(registry);
+        }
+
+        synchronized void acquire() {
+            if (inFlight >= (int) limit) {
+                rejected.increment();
+                throw new SearchRejectedException(resourceType, (int) limit);
+            }
+            inFlight++;
+        }
+
+        synchronized void release(long latencyNanos, boolean dropped) {
+            if (dropped || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            inFlight--;
+        }
+
+        void release(long latencyNanos, Throwable failure) {
+            if (isOverload(failure)) {
+                release(latencyNanos, true);
+            } else {
+                ignore();
+            }
+        }
+
+        synchronized void ignore() {
+            inFlight--;
+        }
+    }
+}
@@ -1,251 +1,460 @@
 package journal.Core;
 
-import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.gclient.ICriterion;
+import ca.uhn.fhir.rest.gclient.IQuery;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import io.quarkus.cache.CacheResult;
+import io.quarkus.logging.Log;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.subscription.MultiEmitter;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import journal.Core.Model.PatientData;
 import journal.Core.Model.PractitionerData;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.r4.model.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
-public class HealthService {
-    private FhirContext context;
-    private IGenericClient client;
+public class HealthService implements SearchService {
+    @Inject
+    IGenericClient client;
 
-    private static final String HAPI_SERVER_URL = "https://hapi-fhir.app.cloud.cbh.kth.se/fhir";
-    private static final String PATIENT_SYSTEM = "http://electronichealth.se/identifier/personnummer";
-    private static final String PRACTITIONER_SYSTEM = "http://terminology.hl7.org/CodeSystem/v2-0203";
-    private static final String PRACTITIONER_ROLE_SYSTEM = "http://terminology.hl7.org/CodeSystem/practitioner-role";
-    private static final String CONDITION_SYSTEM = "http://snomed.info/sct";
+    @ConfigProperty(name = "search.hapi.prefetch-pages", defaultValue = "1")
+    int prefetchPages;
 
-    public HealthService() {
-        this.context = FhirContext.forR4();
-        this.client = context.newRestfulGenericClient(HAPI_SERVER_URL);
-    }
+    @ConfigProperty(name = "search.hapi.page-size", defaultValue = "50")
+    int pageSize;
+
+    @ConfigProperty(name = "search.hapi.chained-search", defaultValue = "true")
+    volatile boolean chainedSearch;
+
+    @ConfigProperty(name = "search.condition.codes-per-query", defaultValue = "20")
+    int codesPerQuery;
+
+    @ConfigProperty(name = "search.condition.parallelism", defaultValue = "4")
+    int conditionParallelism;
+
+    @Inject
+    SearchExecutor searchExecutor;
+
+    @Inject
+    PatientIndex patientIndex;
 
-    public Multi<Patient> getPatientsByName(String name) {
-        return Multi.createFrom().emitter(emitter -> {
-            Bundle bundle = client.search()
+    @Inject
+    SearchMetrics metrics;
+
+    @Inject
+    SearchTracing tracing;
+
+    @Inject
+    HapiLimiter limiter;
+
+    @Inject
+    StreamingBundleReader streamingReader;
+
+    @ConfigProperty(name = "search.hapi.streaming-parser", defaultValue = "false")
+    boolean streamingParser;
+
+    static final String PATIENT_SYSTEM = "http://electronichealth.se/identifier/personnummer";
+    static final String PRACTITIONER_SYSTEM = "http://terminology.hl7.org/CodeSystem/v2-0203";
+    private static final String PRACTITIONER_ROLE_SYSTEM = "http://terminology.hl7.org/CodeSystem/practitioner-role";
+    static final String CONDITION_SYSTEM = "http://snomed.info/sct";
+    private static final String PRACTITIONER_ROLES_KEY = "practitionerRoles";
+    static final String[] PRACTITIONER_ROLE_ELEMENTS = {"practitioner", "code"};
+    private static final List<String> CHAIN_REJECTIONS = List.of("chain", "unknown", "unsupported", "not supported", "does not know how to handle");
+
+    @Override
+    public Multi<Patient> getPatientsByName(String name, Projection fields) {
+        if (patientIndex != null && patientIndex.isReady()) {
+            return getPatientsById(patientIndex.search(name, null), fields);
+        }
+        return Uni.createFrom().item(() -> execute(FhirOperation.Search, ResourceType.Patient, () -> client.search()
                     .forResource(Patient.class)
                     .where(Patient.IDENTIFIER.hasSystemWithAnyCode(PATIENT_SYSTEM))
                     .where(Patient.NAME.contains().value(name))
                     .sort().ascending(Patient.NAME)
                     .returnBundle(Bundle.class)
-                    .execute();
-
-            processPatients(bundle, emitter);
-
-            emitter.complete();
-        });
+                    .count(pageSize)
+                    .elementsSubset(fields.elements())
+                    .execute()))
+            .onItem().transformToMulti(bundle -> processPatients(bundle, ResourceType.Patient));
     }
 
-    public Multi<Patient> getPatientsByNameAndPractitionerIdentifier(String name, String identifierValue) {
-        return Uni.createFrom().item(() -> getPractitionerByIdentifier(identifierValue))
-            .onItem().transformToMulti(practitioner -> Multi.createFrom().emitter(emitter -> {
-                Bundle bundle = client.search()
-                        .forResource(Patient.class)
-                        .where(Patient.IDENTIFIER.hasSystemWithAnyCode(PATIENT_SYSTEM))
-                        .where(Patient.NAME.contains().value(name))
-                        .where(Patient.GENERAL_PRACTITIONER.hasId("Practitioner/" + practitioner.getIdElement().getIdPart()))
-                        .sort().ascending(Patient.NAME)
-                        .returnBundle(Bundle.class)
-                        .execute();
-
-                processPatients(bundle, emitter);
+    @Override
+    public Multi<Patient> getPatientsByNameAndPractitionerIdentifier(String name, String identifierValue, Projection fields) {
+        if (patientIndex != null && patientIndex.isReady()) {
+            return Uni.createFrom().item(() -> getPractitionerByIdentifier(identifierValue))
+                .onItem().transformToMulti(practitioner -> practitioner == null
+                        ? Multi.createFrom().empty()
+                        : getPatientsById(patientIndex.search(name, practitioner.getIdElement().getIdPart()), fields));
+        }
+        return byPractitioner(ResourceType.Patient, identifierValue, generalPractitioner -> client.search()
+                    .forResource(Patient.class)
+                    .where(Patient.IDENTIFIER.hasSystemWithAnyCode(PATIENT_SYSTEM))
+                    .where(Patient.NAME.contains().value(name))
+                    .where(generalPractitioner)
+                    .sort().ascending(Patient.NAME)
+                    .returnBundle(Bundle.class)
+                    .count(pageSize)
+                    .elementsSubset(fields.elements())
+                    .execute())
+            .onItem().transformToMulti(bundle -> processPatients(bundle, ResourceType.Patient));
+    }
 
-                emitter.complete();
-            }));
+    @Override
+    public Multi<Patient> getPatientsByConditionCodes(List<String> codes, Projection fields) {
+        if (streamingParser && streamingReader != null) {
+            return fanOut(codes, codesPerQuery, conditionParallelism, chunk -> streamingReader.search(ResourceType.Condition, Map.of(
+                        "code", conditionCodes(chunk),
+                        "_include", "Condition:subject",
+                        "_count", String.valueOf(pageSize),
+                        "_elements", String.join(",", fields.elements())), getPageExecutor()))
+                .plug(PatientIdSet::distinct);
+        }
+        return fanOut(codes, codesPerQuery, conditionParallelism, chunk -> Uni.createFrom().item(() -> execute(FhirOperation.Search, ResourceType.Condition, () -> client.search()
+                    .forResource(Condition.class)
+                    .where(Condition.CODE.exactly().systemAndValues(CONDITION_SYSTEM, chunk))
+                    .include(Condition.INCLUDE_SUBJECT)
+                    .returnBundle(Bundle.class)
+                    .count(pageSize)
+                    .elementsSubset(fields.elements())
+                    .execute()))
+            .onItem().transformToMulti(bundle -> processPatients(bundle, ResourceType.Condition)))
+            .plug(PatientIdSet::distinct);
     }
 
-    public Multi<Patient> getPatientsByConditionCode(String code) {
-        return Multi.createFrom().emitter(emitter -> {
-            Bundle bundle = client.search()
+    @Override
+    public Multi<Patient> getPatientsByConditionCodesAndPractitionerIdentifier(List<String> codes, String identifierValue, Projection fields) {
+        return fanOut(codes, codesPerQuery, conditionParallelism, chunk -> byPractitioner(ResourceType.Condition, identifierValue, generalPractitioner -> client.search()
                     .forResource(Condition.class)
-                    .where(Condition.CODE.exactly().systemAndCode(CONDITION_SYSTEM, code))
+                    .where(Condition.CODE.exactly().systemAndValues(CONDITION_SYSTEM, chunk))
+                    .where(Condition.SUBJECT.hasChainedProperty("Patient", generalPractitioner))
                     .include(Condition.INCLUDE_SUBJECT)
                     .returnBundle(Bundle.class)
-                    .execute();
+                    .count(pageSize)
+                    .elementsSubset(fields.elements())
+                    .execute())
+            .onItem().transformToMulti(bundle -> processPatients(bundle, ResourceType.Condition)))
+            .plug(PatientIdSet::distinct);
+    }
+
+    /**
+     * Runs a search filtered on the general practitioner with the given identifier. The practitioner is matched
+     * with a chained {@code general-practitioner:Practitioner.identifier} parameter in the same request. If HAPI
+     * rejects the chain itself, the practitioner is looked up first and matched by id from then on. Any other
+     * failure is passed on.
+     */
+    private Uni<Bundle> byPractitioner(ResourceType resourceType, String identifierValue, Function<ICriterion<?>, Bundle> search) {
+        Uni<Bundle> twoStep = Uni.createFrom().item(() -> getPractitionerByIdentifier(identifierValue))
+                .onItem().transform(practitioner -> practitioner == null
+                        ? new Bundle()
+                        : execute(FhirOperation.Search, resourceType, () -> search.apply(
+                                Patient.GENERAL_PRACTITIONER.hasId("Practitioner/" + practitioner.getIdElement().getIdPart()))));
+        if (!chainedSearch) {
+            return twoStep;
+        }
+        return Uni.createFrom().item(() -> execute(FhirOperation.Search, resourceType, () -> search.apply(
+                    Patient.GENERAL_PRACTITIONER.hasChainedProperty("Practitioner",
+                            Practitioner.IDENTIFIER.exactly().systemAndIdentifier(PRACTITIONER_SYSTEM, identifierValue)))))
+            .onFailure(HealthService::rejectsChain).recoverWithUni(failure -> {
+                Log.warnf("HAPI rejected the chained practitioner search, falling back to a practitioner lookup: %s", failure.getMessage());
+                chainedSearch = false;
+                return twoStep;
+            });
+    }
+
+    /**
+     * Whether HAPI answered 400 because it does not support the chained practitioner parameter, rather than
+     * because of something else in the request. Looks for the parameter and an unknown-parameter reason in the
+     * message and in the diagnostics of the returned {@link OperationOutcome}.
+     */
+    static boolean rejectsChain(Throwable failure) {
+        if (!(failure instanceof InvalidRequestException rejection)) {
+            return false;
+        }
+        StringBuilder diagnostics = new StringBuilder(String.valueOf(rejection.getMessage()));
+        if (rejection.getOperationOutcome() instanceof OperationOutcome outcome) {
+            outcome.getIssue().forEach(issue -> diagnostics.append(' ').append(issue.getDiagnostics()));
+        }
+        String text = diagnostics.toString().toLowerCase(Locale.ROOT);
+        return text.contains(Patient.SP_GENERAL_PRACTITIONER)
+                && CHAIN_REJECTIONS.stream().anyMatch(text::contains);
+    }
 
-            processPatients(bundle, emitter);
+    static String conditionCodes(List<String> codes) {
+        return codes.stream().map(code -> CONDITION_SYSTEM + "|" + code).collect(Collectors.joining(","));
+    }
 
-            emitter.complete();
-        });
+    /**
+     * Splits the codes into comma-joined token searches of at most {@code codesPerQuery} codes each and
+     * merges their results, running at most {@code parallelism} searches at a time.
+     */
+    static Multi<Patient> fanOut(List<String> codes, int codesPerQuery, int parallelism, Function<List<String>, Multi<Patient>> search) {
+        List<List<String>> chunks = PatientIndex.partition(codes, Math.max(1, codesPerQuery));
+        if (chunks.size() == 1) {
+            return search.apply(chunks.get(0));
+        }
+        return Multi.createFrom().iterable(chunks)
+                .onItem().transformToMulti(search).merge(Math.max(1, parallelism));
     }
 
-    public Multi<Patient> getPatientsByConditionCodeAndPractitionerIdentifier(String code, String identifierValue) {
-        return Uni.createFrom().item(() -> getPractitionerByIdentifier(identifierValue))
-            .onItem().transformToMulti(practitioner -> Multi.createFrom().emitter(emitter -> {
-                Bundle bundle = client.search()
-                        .forResource(Condition.class)
-                        .where(Condition.CODE.exactly().systemAndCode(CONDITION_SYSTEM, code))
-                        .where(Condition.SUBJECT.hasChainedProperty(Patient.GENERAL_PRACTITIONER.hasId("Practitioner/" + practitioner.getIdElement().getIdPart())))
-                        .include(Condition.INCLUDE_SUBJECT)
+    private Multi<Patient> getPatientsById(List<String> ids, Projection fields) {
+        return Multi.createFrom().iterable(PatientIndex.partition(ids, pageSize))
+                .onItem().transformToIterable(chunk -> PatientIndex.inOrder(chunk, getPatients(execute(FhirOperation.Search, ResourceType.Patient, () -> client.search()
+                        .forResource(Patient.class)
+                        .where(Patient.RES_ID.exactly().codes(chunk))
                         .returnBundle(Bundle.class)
-                        .execute();
+                        .count(chunk.size())
+                        .elementsSubset(fields.elements())
+                        .execute()))));
+    }
 
-                processPatients(bundle, emitter);
+    private Multi<Patient> processPatients(Bundle bundle, ResourceType resourceType) {
+        return new BundlePager(client, prefetchPages, getPageExecutor(), getMetrics(), getTracing(), getLimiter(), resourceType).pages(bundle)
+                .onItem().transformToIterable(HealthService::getPatients);
+    }
+
+    private Executor getPageExecutor() {
+        return searchExecutor != null ? searchExecutor.getExecutor() : Infrastructure.getDefaultWorkerPool();
+    }
+
+    private SearchMetrics getMetrics() {
+        return metrics != null ? metrics : SearchMetrics.NONE;
+    }
+
+    private SearchTracing getTracing() {
+        return tracing != null ? tracing : SearchTracing.NONE;
+    }
 
-                emitter.complete();
-            }));
+    private HapiLimiter getLimiter() {
+        return limiter != null ? limiter : HapiLimiter.NONE;
     }
 
-    private void processPatients(Bundle bundle, MultiEmitter<? super Patient> emitter) {
-        bundle.getEntry().stream()
+    private Bundle execute(FhirOperation operation, ResourceType resourceType, Supplier<Bundle> request) {
+        return getLimiter().call(resourceType, () -> getTracing().trace(operation, resourceType, 0, () -> getMetrics().time(operation, resourceType, request)));
+    }
+
+    static List<Patient> getPatients(Bundle bundle) {
+        return bundle.getEntry().stream()
                 .filter(entry -> entry.getResource() instanceof Patient)
                 .map(entry -> (Patient) entry.getResource())
-                .forEach(emitter::emit);
-
-        while (bundle.getLink(Bundle.LINK_NEXT) != null) {
-            bundle = client.loadPage().next(bundle).execute();
-            bundle.getEntry().stream()
-                    .filter(entry -> entry.getResource() instanceof Patient)
-                    .map(entry -> (Patient) entry.getResource())
-                    .forEach(emitter::emit);
-        }
+                .toList();
     }
 
+    /**
+     * Returns the practitioner with the given HSA identifier, or null if there is none. Only found practitioners
+     * are cached, so a practitioner created after a miss is found on the next lookup.
+     */
     public Practitioner getPractitionerByIdentifier(String identifierValue) {
-        Bundle bundle = client
+        try {
+            return findPractitionerByIdentifier(identifierValue);
+        } catch (ResourceNotFoundException e) {
+            return null;
+        }
+    }
+
+    @CacheResult(cacheName = "practitioner-by-identifier")
+    Practitioner findPractitionerByIdentifier(String identifierValue) {
+        Bundle bundle = execute(FhirOperation.PractitionerLookup, ResourceType.Practitioner, () -> client
                 .search()
                 .forResource(Practitioner.class)
                 .where(Practitioner.IDENTIFIER.exactly().systemAndIdentifier(PRACTITIONER_SYSTEM, identifierValue))
                 .returnBundle(Bundle.class)
-                .execute();
+                .elementsSubset("identifier")
+                .execute());
         List<Bundle.BundleEntryComponent> entries = bundle.getEntry();
         if (entries.isEmpty()) {
-            return null;
+            throw new ResourceNotFoundException("No practitioner with identifier " + identifierValue);
         }
         return (Practitioner) entries.get(0).getResource();
     }
 
-    public Multi<Practitioner> getPractitionersByName(String name) {
-        return Multi.createFrom().emitter(emitter -> {
-            Bundle bundle = client.search()
-                    .forResource(Practitioner.class)
-                    .where(Practitioner.IDENTIFIER.hasSystemWithAnyCode(PRACTITIONER_SYSTEM))
-                    .where(Practitioner.NAME.contains().value(name))
-                    .sort().ascending(Practitioner.NAME)
-                    .returnBundle(Bundle.class)
-                    .execute();
-
-            processPractitioners(bundle, emitter);
+    @Override
+    public Multi<Practitioner> getPractitionersByName(String name, Projection fields) {
+        return Uni.createFrom().item(() -> execute(FhirOperation.Search, ResourceType.Practitioner, () -> {
+                    IQuery<IBaseBundle> query = client.search()
+                            .forResource(Practitioner.class)
+                            .where(Practitioner.IDENTIFIER.hasSystemWithAnyCode(PRACTITIONER_SYSTEM))
+                            .where(Practitioner.NAME.contains().value(name));
+                    if (fields.has(Projection.Field.Role)) {
+                        query = query.revInclude(PractitionerRole.INCLUDE_PRACTITIONER);
+                    }
+                    return query.sort().ascending(Practitioner.NAME)
+                            .returnBundle(Bundle.class)
+                            .count(pageSize)
+                            .elementsSubset(fields.elements())
+                            .execute();
+                }))
+            .onItem().transformToMulti(this::processPractitioners);
+    }
 
-            emitter.complete();
-        });
+    private Multi<Practitioner> processPractitioners(Bundle bundle) {
+        return new BundlePager(client, prefetchPages, getPageExecutor(), getMetrics(), getTracing(), getLimiter(), ResourceType.Practitioner).pages(bundle)
+                .onItem().transformToIterable(HealthService::getPractitioners);
     }
 
-    private void processPractitioners(Bundle bundle, MultiEmitter<? super Practitioner> emitter) {
-        bundle.getEntry().stream()
-                .map(entry -> (Practitioner) entry.getResource())
-                .forEach(emitter::emit);
+    /**
+     * Returns the practitioners of a search page with the page's included roles attached. A practitioner without
+     * an included role gets an empty list and is not looked up again: {@code _revinclude} returns every role that
+     * references the page's practitioners, so it has none. Only practitioners that did not come from a search
+     * page fall back to {@link #getPractitionerRoleByPractitionerId}.
+     */
+    static List<Practitioner> getPractitioners(Bundle bundle) {
+        Map<String, List<PractitionerRole>> rolesByPractitioner = new HashMap<>();
+        for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+            if (entry.getResource() instanceof PractitionerRole practitionerRole && practitionerRole.hasPractitioner()) {
+                String practitionerId = practitionerRole.getPractitioner().getReferenceElement().getIdPart();
+                rolesByPractitioner.computeIfAbsent(practitionerId, id -> new ArrayList<>()).add(practitionerRole);
+            }
+        }
 
-        while (bundle.getLink(Bundle.LINK_NEXT) != null) {
-            bundle = client.loadPage().next(bundle).execute();
-            bundle.getEntry().stream()
-                    .map(entry -> (Practitioner) entry.getResource())
-                    .forEach(emitter::emit);
+        List<Practitioner> practitioners = new ArrayList<>();
+        for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+            if (entry.getResource() instanceof Practitioner practitioner) {
+                practitioner.setUserData(PRACTITIONER_ROLES_KEY,
+                        rolesByPractitioner.getOrDefault(practitioner.getIdElement().getIdPart(), List.of()));
+                practitioners.add(practitioner);
+            }
         }
+        return practitioners;
     }
 
     public PatientData getPatientData(Patient patient) {
+        return getPatientData(patient, Projection.PATIENT);
+    }
+
+    /**
+     * Maps the patient, extracting only the selected fields. Fields outside the projection are left null.
+     */
+    public PatientData getPatientData(Patient patient, Projection fields) {
         if (patient == null) {
             return null;
         }
-        String ssn = "";
-        if (patient.hasIdentifier()) {
-            for (Identifier id : patient.getIdentifier()) {
-                if (id.hasSystem() && id.getSystem().equals(PATIENT_SYSTEM)) {
-                    ssn = id.getValue();
-                    break;
-                }
+        Address address = fields.hasAddress() ? getAddress(patient) : null;
+        return new PatientData(
+                fields.has(Projection.Field.Id) ? getSsn(patient) : null,
+                fields.has(Projection.Field.FullName) ? getFullName(patient) : null,
+                fields.has(Projection.Field.Gender) ? getGender(patient) : null,
+                fields.has(Projection.Field.Email) ? getContact(patient.getTelecom(), ContactPoint.ContactPointSystem.EMAIL) : null,
+                fields.has(Projection.Field.Phone) ? getContact(patient.getTelecom(), ContactPoint.ContactPointSystem.PHONE) : null,
+                fields.has(Projection.Field.Line) ? getLine(address) : null,
+                fields.has(Projection.Field.City) ? getCity(address) : null,
+                fields.has(Projection.Field.PostalCode) ? getPostalCode(address) : null);
+    }
+
+    static String getSsn(Patient patient) {
+        for (Identifier id : patient.getIdentifier()) {
+            if (id.hasSystem() && id.getSystem().equals(PATIENT_SYSTEM)) {
+                return id.getValue();
             }
         }
-        String fullName = "";
+        return "";
+    }
+
+    static String getFullName(Patient patient) {
         if (patient.hasName() && !patient.getName().isEmpty()) {
-            fullName = patient.getNameFirstRep().getNameAsSingleString();
+            return patient.getNameFirstRep().getNameAsSingleString();
         }
+        return "";
+    }
+
+    static Gender getGender(Patient patient) {
         Enumerations.AdministrativeGender administrativeGender = patient.getGender();
-        Gender gender = null;
-        if (administrativeGender != null) {
-            gender =
-                    switch (administrativeGender) {
-                        case FEMALE -> Gender.Female;
-                        case MALE -> Gender.Male;
-                        case UNKNOWN -> Gender.Unknown;
-                        case OTHER -> Gender.Other;
-                        case NULL -> null;
-                    };
+        if (administrativeGender == null) {
+            return null;
         }
-        String email = "";
-        String phone = "";
-        if (patient.hasTelecom()) {
-            for (ContactPoint contactPoint : patient.getTelecom()) {
-                if (phone.isEmpty() && contactPoint.hasSystem() &&
-                        contactPoint.getSystem() == ContactPoint.ContactPointSystem.PHONE) {
-                    phone = contactPoint.getValue();
-                }
-                if (email.isEmpty() && contactPoint.hasSystem() &&
-                        contactPoint.getSystem() == ContactPoint.ContactPointSystem.EMAIL) {
-                    email = contactPoint.getValue();
+        return switch (administrativeGender) {
+            case FEMALE -> Gender.Female;
+            case MALE -> Gender.Male;
+            case UNKNOWN -> Gender.Unknown;
+            case OTHER -> Gender.Other;
+            case NULL -> null;
+        };
+    }
+
+    static String getContact(List<ContactPoint> telecom, ContactPoint.ContactPointSystem system) {
+        for (ContactPoint contactPoint : telecom) {
+            if (contactPoint.hasSystem() && contactPoint.getSystem() == system) {
+                String value = contactPoint.getValue();
+                if (value == null || !value.isEmpty()) {
+                    return value;
                 }
             }
         }
-        String line = "";
-        String city = "";
-        String postalCode = "";
-        if (patient.hasAddress() && !patient.getAddress().isEmpty()) {
-            Address address = patient.getAddressFirstRep();
-            if (address.hasLine() && !address.getLine().isEmpty()) {
-                line = address.getLine().get(0).getValue();
-            }
-            if (address.hasCity()) {
-                city = address.getCity();
-            }
-            if (address.hasPostalCode()) {
-                postalCode = address.getPostalCode();
-            }
-        }
+        return "";
+    }
+
+    static Address getAddress(Patient patient) {
+        return patient.hasAddress() && !patient.getAddress().isEmpty() ? patient.getAddressFirstRep() : null;
+    }
+
+    static String getLine(Address address) {
+        return address != null && address.hasLine() && !address.getLine().isEmpty() ? address.getLine().get(0).getValue() : "";
+    }
+
+    static String getCity(Address address) {
+        return address != null && address.hasCity() ? address.getCity() : "";
+    }
 
-        return new PatientData(ssn, fullName, gender, email, phone, line, city, postalCode);
+    static String getPostalCode(Address address) {
+        return address != null && address.hasPostalCode() ? address.getPostalCode() : "";
     }
 
     public PractitionerData getPractitionerData(Practitioner practitioner) {
+        return getPractitionerData(practitioner, Projection.PRACTITIONER);
+    }
+
+    /**
+     * Maps the practitioner, extracting only the selected fields. Fields outside the projection are left null,
+     * and roles are not looked up unless the role is selected.
+     */
+    public PractitionerData getPractitionerData(Practitioner practitioner, Projection fields) {
         if (practitioner == null) {
             return null;
         }
+        return new PractitionerData(
+                fields.has(Projection.Field.Id) ? getHsaId(practitioner) : null,
+                fields.has(Projection.Field.FullName) ? getFullName(practitioner) : null,
+                fields.has(Projection.Field.Role) ? getRole(practitioner) : null,
+                fields.has(Projection.Field.Email) ? getContact(practitioner, ContactPoint.ContactPointSystem.EMAIL) : null,
+                fields.has(Projection.Field.Phone) ? getContact(practitioner, ContactPoint.ContactPointSystem.PHONE) : null);
+    }
 
-        String hsaId = "";
-        for (Identifier id : practitioner.getIdentifier()) {
-            if (id.getSystem().equals(PRACTITIONER_SYSTEM)) {
-                hsaId = id.getValue();
-                break;
-            }
-        }
+    static String getFullName(Practitioner practitioner) {
+        return practitioner.getName().get(0).getNameAsSingleString();
+    }
 
-        String phone = "";
-        String email = "";
-        if (practitioner.hasTelecom()) {
-            for (ContactPoint contactPoint : practitioner.getTelecom()) {
-                if (phone.isEmpty() && contactPoint.hasSystem() &&
-                        contactPoint.getSystem() == ContactPoint.ContactPointSystem.PHONE) {
-                    phone = contactPoint.getValue();
-                }
-                if (email.isEmpty() && contactPoint.hasSystem() &&
-                        contactPoint.getSystem() == ContactPoint.ContactPointSystem.EMAIL) {
-                    email = contactPoint.getValue();
-                }
+    static String getContact(Practitioner practitioner, ContactPoint.ContactPointSystem system) {
+        String value = "";
+        for (ContactPoint contactPoint : practitioner.getTelecom()) {
+            if (value.isEmpty() && contactPoint.hasSystem() && contactPoint.getSystem() == system) {
+                value = contactPoint.getValue();
             }
         }
+        return value;
+    }
 
-        String fullName = practitioner.getName().get(0).getNameAsSingleString();
-
+    /**
+     * The display of the practitioner's first role, taken from the roles included with the search or looked up
+     * by practitioner id.
+     */
+    public String getRole(Practitioner practitioner) {
         String role = "";
-        List<PractitionerRole> practitionerRoles = getPractitionerRoleByPractitionerId(practitioner.getIdPart());
+        List<PractitionerRole> practitionerRoles = getPractitionerRoles(practitioner);
         if (!practitionerRoles.isEmpty()) {
             PractitionerRole practitionerRole = practitionerRoles.get(0);
             if (practitionerRole.hasCode() && !practitionerRole.getCode().isEmpty()) {
@@ -259,16 +468,34 @@ public class HealthService {
                 }
             }
         }
+        return role;
+    }
 
-        return new PractitionerData(hsaId, fullName, role, email, phone);
+    static String getHsaId(Practitioner practitioner) {
+        for (Identifier id : practitioner.getIdentifier()) {
+            if (id.getSystem().equals(PRACTITIONER_SYSTEM)) {
+                return id.getValue();
+            }
+        }
+        return "";
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<PractitionerRole> getPractitionerRoles(Practitioner practitioner) {
+        Object roles = practitioner.getUserData(PRACTITIONER_ROLES_KEY);
+        if (roles != null) {
+            return (List<PractitionerRole>) roles;
+        }
+        return getPractitionerRoleByPractitionerId(practitioner.getIdPart());
     }
 
     public List<PractitionerRole> getPractitionerRoleByPractitionerId(String id) {
-        Bundle bundle = client.search()
+        Bundle bundle = execute(FhirOperation.RoleLookup, ResourceType.PractitionerRole, () -> client.search()
                 .forResource(PractitionerRole.class)
                 .where(PractitionerRole.PRACTITIONER.hasId("Practitioner/" + id))
                 .returnBundle(Bundle.class)
-                .execute();
+                .elementsSubset(PRACTITIONER_ROLE_ELEMENTS)
+                .execute());
         return bundle.getEntry().stream().map(pR -> (PractitionerRole) pR.getResource())
                 .toList();
     }
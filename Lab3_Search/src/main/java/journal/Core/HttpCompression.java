@@ -0,0 +1,55 @@
+package journal.Core;
+
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.netty.handler.codec.compression.Zstd;
+import io.quarkus.logging.Log;
+import io.quarkus.vertx.http.Compressed;
+import io.quarkus.vertx.http.HttpServerOptionsCustomizer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.container.ResourceInfo;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+
+/**
+ * HTTP response compression for the {@link Compressed} endpoints. Adds zstd to the encodings the server
+ * negotiates, next to gzip and deflate, since Quarkus only configures gzip, deflate and brotli itself.
+ * Also applies {@link Compressed} to streamed responses: Quarkus REST honours it once the response is complete,
+ * but a streamed {@code Multi} sends its headers earlier, still carrying the identity encoding that turns
+ * compression off.
+ */
+@ApplicationScoped
+public class HttpCompression implements HttpServerOptionsCustomizer {
+    @ConfigProperty(name = "search.http.zstd", defaultValue = "true")
+    boolean zstd;
+
+    @Override
+    public void customizeHttpServer(HttpServerOptions options) {
+        if (!zstd || !options.isCompressionSupported()) {
+            return;
+        }
+        if (!Zstd.isAvailable()) {
+            Log.warnf("zstd compression is unavailable: %s", Zstd.cause().getMessage());
+            return;
+        }
+        if (options.getCompressors() == null || options.getCompressors().isEmpty()) {
+            options.addCompressor(StandardCompressionOptions.gzip(options.getCompressionLevel(), 15, 8))
+                    .addCompressor(StandardCompressionOptions.deflate(options.getCompressionLevel(), 15, 8));
+        }
+        options.addCompressor(StandardCompressionOptions.zstd());
+    }
+
+    @ServerRequestFilter
+    public void compressStreams(RoutingContext context, ResourceInfo resourceInfo) {
+        if (resourceInfo.getResourceMethod() == null || !resourceInfo.getResourceMethod().isAnnotationPresent(Compressed.class)) {
+            return;
+        }
+        context.addHeadersEndHandler(ignored -> {
+            if (HttpHeaders.IDENTITY.toString().equals(context.response().headers().get(HttpHeaders.CONTENT_ENCODING))) {
+                context.response().headers().remove(HttpHeaders.CONTENT_ENCODING);
+            }
+        });
+    }
+}
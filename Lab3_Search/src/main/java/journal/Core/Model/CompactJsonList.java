@@ -0,0 +1,55 @@
+package journal.Core.Model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of serialized JSON events stored in one UTF-8 byte array instead of as separate strings.
+ * {@link #get(int)} decodes a new string on every call.
+ */
+public final class CompactJsonList extends AbstractList<String> implements RandomAccess {
+    private final byte[] text;
+    private final int[] offsets;
+
+    private CompactJsonList(byte[] text, int[] offsets) {
+        this.text = text;
+        this.offsets = offsets;
+    }
+
+    public static CompactJsonList of(List<String> events) {
+        byte[][] encoded = new byte[events.size()][];
+        int[] offsets = new int[events.size() + 1];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = events.get(i).getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+        byte[] text = new byte[offsets[encoded.length]];
+        for (int i = 0; i < encoded.length; i++) {
+            System.arraycopy(encoded[i], 0, text, offsets[i], encoded[i].length);
+        }
+        return new CompactJsonList(text, offsets);
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new String(text, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public long estimatedBytes() {
+        return 32 + array(text.length) + array(offsets.length * 4L);
+    }
+
+    private static long array(long length) {
+        return 16 + (length + 7) / 8 * 8;
+    }
+}
@@ -0,0 +1,131 @@
+package journal.Core.Model;
+
+import journal.Core.Gender;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of patients stored column by column instead of as {@link PatientData} objects.
+ * Free-text fields share one UTF-8 byte array, city and postal code are dictionary encoded and
+ * gender is a byte. {@link #get(int)} decodes a new {@link PatientData} on every call.
+ */
+public final class CompactPatientList extends AbstractList<PatientData> implements RandomAccess {
+    private static final int TEXT_FIELDS = 5;
+    private static final int ID = 0;
+    private static final int FULL_NAME = 1;
+    private static final int EMAIL = 2;
+    private static final int PHONE = 3;
+    private static final int LINE = 4;
+    private static final Gender[] GENDERS = Gender.values();
+
+    private final int size;
+    private final byte[] text;
+    private final int[] offsets;
+    private final BitSet nulls;
+    private final String[] dictionary;
+    private final int[] cities;
+    private final int[] postalCodes;
+    private final byte[] genders;
+
+    private CompactPatientList(int size, byte[] text, int[] offsets, BitSet nulls, String[] dictionary,
+                               int[] cities, int[] postalCodes, byte[] genders) {
+        this.size = size;
+        this.text = text;
+        this.offsets = offsets;
+        this.nulls = nulls;
+        this.dictionary = dictionary;
+        this.cities = cities;
+        this.postalCodes = postalCodes;
+        this.genders = genders;
+    }
+
+    public static CompactPatientList of(List<PatientData> patients) {
+        int size = patients.size();
+        ByteArrayOutputStream text = new ByteArrayOutputStream(size * 64);
+        int[] offsets = new int[size * TEXT_FIELDS + 1];
+        BitSet nulls = new BitSet();
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[] cities = new int[size];
+        int[] postalCodes = new int[size];
+        byte[] genders = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            PatientData patient = patients.get(i);
+            String[] fields = {patient.getId(), patient.getFullName(), patient.getEmail(), patient.getPhone(), patient.getLine()};
+            for (int field = 0; field < TEXT_FIELDS; field++) {
+                int index = i * TEXT_FIELDS + field;
+                offsets[index] = text.size();
+                if (fields[field] == null) {
+                    nulls.set(index);
+                } else {
+                    text.writeBytes(fields[field].getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            cities[i] = encode(dictionary, patient.getCity());
+            postalCodes[i] = encode(dictionary, patient.getPostalCode());
+            genders[i] = (byte) (patient.getGender() != null ? patient.getGender().ordinal() + 1 : 0);
+        }
+        offsets[size * TEXT_FIELDS] = text.size();
+
+        String[] values = new String[dictionary.size() + 1];
+        dictionary.forEach((value, index) -> values[index] = value);
+        return new CompactPatientList(size, text.toByteArray(), offsets, nulls, values, cities, postalCodes, genders);
+    }
+
+    private static int encode(Map<String, Integer> dictionary, String value) {
+        return value == null ? 0 : dictionary.computeIfAbsent(value, key -> dictionary.size() + 1);
+    }
+
+    @Override
+    public PatientData get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new PatientData(
+                text(index, ID),
+                text(index, FULL_NAME),
+                genders[index] != 0 ? GENDERS[genders[index] - 1] : null,
+                text(index, EMAIL),
+                text(index, PHONE),
+                text(index, LINE),
+                dictionary[cities[index]],
+                dictionary[postalCodes[index]]);
+    }
+
+    private String text(int index, int field) {
+        int position = index * TEXT_FIELDS + field;
+        if (nulls.get(position)) {
+            return null;
+        }
+        int length = offsets[position + 1] - offsets[position];
+        return length == 0 ? "" : new String(text, offsets[position], length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public long estimatedBytes() {
+        long bytes = 64 + array(text.length) + array(offsets.length * 4L) + array(nulls.size() / 8)
+                + array(cities.length * 4L) + array(postalCodes.length * 4L) + array(genders.length)
+                + array(dictionary.length * 4L);
+        for (String value : dictionary) {
+            if (value != null) {
+                bytes += 40 + value.length();
+            }
+        }
+        return bytes;
+    }
+
+    private static long array(long length) {
+        return 16 + (length + 7) / 8 * 8;
+    }
+}
@@ -0,0 +1,51 @@
+package journal.Core.Model;
+
+public class Suggestion {
+    public enum Type {
+        Patient,
+        Practitioner
+    }
+
+    private Type type;
+    private String id;
+    private String fullName;
+
+    public Suggestion(Type type, String id, String fullName) {
+        this.type = type;
+        this.id = id;
+        this.fullName = fullName;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+
+    @Override
+    public String toString() {
+        return "Suggestion{" +
+                "type=" + type +
+                ", id='" + id + '\'' +
+                ", fullName='" + fullName + '\'' +
+                '}';
+    }
+}
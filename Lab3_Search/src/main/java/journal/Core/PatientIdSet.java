@@ -0,0 +1,77 @@
+package journal.Core;
+
+import io.smallrye.mutiny.Multi;
+import org.hl7.fhir.r4.model.Patient;
+
+/**
+ * Set of 64-bit hashes of patient logical ids, stored in an open-addressing {@code long[]}.
+ * Costs about 16 bytes per patient, so a stream can be deduplicated without keeping its resources.
+ */
+public class PatientIdSet {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] slots = new long[INITIAL_CAPACITY];
+    private int size;
+
+    public static Multi<Patient> distinct(Multi<Patient> patients) {
+        return Multi.createFrom().deferred(() -> {
+            PatientIdSet seen = new PatientIdSet();
+            return patients.select().where(patient -> {
+                String id = patient.getIdElement().getIdPart();
+                return id == null || seen.add(id);
+            });
+        });
+    }
+
+    public boolean add(String id) {
+        if ((size + 1) * 2 > slots.length) {
+            resize();
+        }
+        if (insert(slots, hash(id))) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] resized = new long[slots.length * 2];
+        for (long slot : slots) {
+            if (slot != 0) {
+                insert(resized, slot);
+            }
+        }
+        slots = resized;
+    }
+
+    private static boolean insert(long[] slots, long hash) {
+        int mask = slots.length - 1;
+        int index = (int) hash & mask;
+        while (slots[index] != 0) {
+            if (slots[index] == hash) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = hash;
+        return true;
+    }
+
+    static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+}
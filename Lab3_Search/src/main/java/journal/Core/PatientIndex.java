@@ -0,0 +1,212 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.gclient.DateClientParam;
+import ca.uhn.fhir.rest.gclient.IQuery;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hl7.fhir.r4.model.*;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import static journal.Core.HealthService.PATIENT_SYSTEM;
+
+/**
+ * In-memory trigram index over the names, personal identity numbers and general practitioners of all
+ * patients with a personal identity number, so a search matches either a name or the number. It is filled
+ * by a bulk load on the first sync and kept current by polling HAPI with {@code _lastUpdated}. Patients
+ * deleted on the server stay indexed until restart.
+ */
+@ApplicationScoped
+public class PatientIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}");
+    private static final String[] INDEX_ELEMENTS = {"identifier", "name", "generalPractitioner"};
+    private static final int GRAM = 3;
+
+    @Inject
+    IGenericClient client;
+
+    @ConfigProperty(name = "search.index.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "search.index.page-size", defaultValue = "1000")
+    int pageSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, IndexedPatient> patients = new HashMap<>();
+    private final Map<String, Set<String>> grams = new HashMap<>();
+    private volatile boolean ready;
+    private volatile Date lastUpdated;
+
+    record IndexedPatient(String id, String names, String sortKey, Set<String> generalPractitioners) {
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @Scheduled(every = "${search.index.sync-interval:1m}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sync() {
+        if (!enabled) {
+            return;
+        }
+        IQuery<Bundle> query = client.search()
+                .forResource(Patient.class)
+                .where(Patient.IDENTIFIER.hasSystemWithAnyCode(PATIENT_SYSTEM))
+                .returnBundle(Bundle.class)
+                .count(pageSize)
+                .elementsSubset(INDEX_ELEMENTS);
+        if (lastUpdated != null) {
+            query = query.where(new DateClientParam("_lastUpdated").afterOrEquals().millis(lastUpdated));
+        }
+
+        int count = 0;
+        Bundle bundle = query.execute();
+        while (true) {
+            for (Patient patient : HealthService.getPatients(bundle)) {
+                put(patient);
+                count++;
+            }
+            if (bundle.getLink(Bundle.LINK_NEXT) == null) {
+                break;
+            }
+            bundle = client.loadPage().next(bundle).execute();
+        }
+        if (!ready) {
+            Log.infof("Patient index loaded with %d patients", count);
+        }
+        ready = true;
+    }
+
+    public void put(Patient patient) {
+        Date updated = patient.getMeta().getLastUpdated();
+        IndexedPatient indexed = toIndexedPatient(patient);
+        lock.writeLock().lock();
+        try {
+            IndexedPatient previous = patients.put(indexed.id(), indexed);
+            if (previous != null) {
+                for (String gram : grams(previous.names())) {
+                    Set<String> ids = grams.get(gram);
+                    ids.remove(previous.id());
+                    if (ids.isEmpty()) {
+                        grams.remove(gram);
+                    }
+                }
+            }
+            for (String gram : grams(indexed.names())) {
+                grams.computeIfAbsent(gram, key -> new HashSet<>()).add(indexed.id());
+            }
+            if (updated != null && (lastUpdated == null || updated.after(lastUpdated))) {
+                lastUpdated = updated;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the patients whose name or personal identity number contains {@code name}. A name shorter than a
+     * trigram is matched by scanning every patient. A blank name is rejected rather than matching everyone.
+     */
+    public List<String> search(String name, String practitionerId) {
+        String query = normalize(name);
+        if (query.isBlank()) {
+            throw new BadRequestException("A name is required");
+        }
+        String generalPractitioner = practitionerId != null ? "Practitioner/" + practitionerId : null;
+        List<IndexedPatient> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String id : candidates(query)) {
+                IndexedPatient patient = patients.get(id);
+                if (patient.names().contains(query)
+                        && (generalPractitioner == null || patient.generalPractitioners().contains(generalPractitioner))) {
+                    matches.add(patient);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparing(IndexedPatient::sortKey).thenComparing(IndexedPatient::id));
+        return matches.stream().map(IndexedPatient::id).toList();
+    }
+
+    private Collection<String> candidates(String query) {
+        if (query.length() < GRAM) {
+            return patients.keySet();
+        }
+        Set<String> candidates = null;
+        for (String gram : grams(query)) {
+            Set<String> ids = grams.getOrDefault(gram, Set.of());
+            if (candidates == null || ids.size() < candidates.size()) {
+                candidates = ids;
+            }
+        }
+        return candidates;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    private static IndexedPatient toIndexedPatient(Patient patient) {
+        StringJoiner names = new StringJoiner("\n");
+        String ssn = HealthService.getSsn(patient);
+        if (!ssn.isEmpty()) {
+            names.add(normalize(ssn));
+        }
+        for (HumanName humanName : patient.getName()) {
+            if (humanName.hasText()) {
+                names.add(normalize(humanName.getText()));
+            }
+            if (humanName.hasFamily()) {
+                names.add(normalize(humanName.getFamily()));
+            }
+            for (StringType given : humanName.getGiven()) {
+                names.add(normalize(given.getValue()));
+            }
+        }
+        HumanName firstName = patient.getNameFirstRep();
+        String sortKey = normalize(Objects.toString(firstName.getFamily(), "") + " " + firstName.getGivenAsSingleString());
+        Set<String> generalPractitioners = new HashSet<>();
+        for (Reference reference : patient.getGeneralPractitioner()) {
+            generalPractitioners.add(reference.getReferenceElement().toUnqualifiedVersionless().getValue());
+        }
+        return new IndexedPatient(patient.getIdElement().getIdPart(), names.toString(), sortKey, generalPractitioners);
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    static List<List<String>> partition(List<String> ids, int size) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += size) {
+            chunks.add(ids.subList(i, Math.min(i + size, ids.size())));
+        }
+        return chunks;
+    }
+
+    static List<Patient> inOrder(List<String> ids, List<Patient> patients) {
+        Map<String, Patient> patientsById = new HashMap<>();
+        for (Patient patient : patients) {
+            patientsById.put(patient.getIdElement().getIdPart(), patient);
+        }
+        return ids.stream().map(patientsById::get).filter(Objects::nonNull).toList();
+    }
+}
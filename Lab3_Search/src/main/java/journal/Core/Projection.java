@@ -0,0 +1,94 @@
+package journal.Core;
+
+import jakarta.ws.rs.BadRequestException;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Fields of a search result selected with the {@code fields} query parameter. Only the selected fields
+ * are extracted and written, and the HAPI search asks for the FHIR elements backing them with
+ * {@code _elements}, so an id and name projection skips telecom and address on both sides.
+ */
+public final class Projection {
+    public enum Field {
+        Id("id", "identifier"),
+        FullName("fullName", "name"),
+        Gender("gender", "gender"),
+        Email("email", "telecom"),
+        Phone("phone", "telecom"),
+        Line("line", "address"),
+        City("city", "address"),
+        PostalCode("postalCode", "address"),
+        Role("role", "practitioner", "code");
+
+        private final String jsonName;
+        private final String[] elements;
+
+        Field(String jsonName, String... elements) {
+            this.jsonName = jsonName;
+            this.elements = elements;
+        }
+
+        public String getJsonName() {
+            return jsonName;
+        }
+    }
+
+    public static final Projection PATIENT = new Projection(EnumSet.of(Field.Id, Field.FullName, Field.Gender,
+            Field.Email, Field.Phone, Field.Line, Field.City, Field.PostalCode));
+    public static final Projection PRACTITIONER = new Projection(EnumSet.of(Field.Id, Field.FullName, Field.Role,
+            Field.Email, Field.Phone));
+
+    private final Set<Field> fields;
+    private final String[] elements;
+    private final String names;
+
+    private Projection(EnumSet<Field> fields) {
+        this.fields = fields;
+        this.elements = fields.stream().flatMap(field -> Arrays.stream(field.elements)).distinct().toArray(String[]::new);
+        this.names = fields.stream().map(Field::getJsonName).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Parses a comma-separated list of field names. A missing or empty list selects every field of {@code all}.
+     */
+    public static Projection parse(String fields, Projection all) {
+        if (fields == null || fields.isBlank()) {
+            return all;
+        }
+        EnumSet<Field> selected = EnumSet.noneOf(Field.class);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            Field field = all.fields.stream().filter(candidate -> candidate.jsonName.equals(trimmed)).findFirst()
+                    .orElseThrow(() -> new BadRequestException("Unknown field '" + trimmed + "', expected any of " + all.names));
+            selected.add(field);
+        }
+        return selected.isEmpty() || selected.equals(all.fields) ? all : new Projection(selected);
+    }
+
+    public boolean has(Field field) {
+        return fields.contains(field);
+    }
+
+    public boolean hasAddress() {
+        return has(Field.Line) || has(Field.City) || has(Field.PostalCode);
+    }
+
+    /**
+     * FHIR elements to request with {@code _elements}.
+     */
+    public String[] elements() {
+        return elements.clone();
+    }
+
+    @Override
+    public String toString() {
+        return names;
+    }
+}
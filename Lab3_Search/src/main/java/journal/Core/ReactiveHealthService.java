@@ -0,0 +1,311 @@
+package journal.Core;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import io.opentelemetry.api.trace.Span;
+import io.quarkus.cache.CacheResult;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.netty.handler.codec.http.QueryStringEncoder;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.core.http.HttpClient;
+import io.vertx.mutiny.ext.web.client.HttpRequest;
+import io.vertx.mutiny.ext.web.client.WebClient;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hl7.fhir.r4.model.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import static journal.Core.HealthService.PATIENT_SYSTEM;
+import static journal.Core.HealthService.PRACTITIONER_SYSTEM;
+
+@ApplicationScoped
+public class ReactiveHealthService implements SearchService {
+    private final FhirContext context;
+    private final Vertx vertx;
+    private final HttpClient httpClient;
+    private final WebClient client;
+    private final String serverUrl;
+    private final int pageSize;
+    private final int codesPerQuery;
+    private final int conditionParallelism;
+    private volatile boolean chainedSearch;
+    private final PatientIndex patientIndex;
+    private final SearchMetrics metrics;
+    private final SearchTracing tracing;
+    private final HapiLimiter limiter;
+
+    private static final String FHIR_JSON = "application/fhir+json";
+
+    @Inject
+    public ReactiveHealthService(Vertx vertx, FhirContext context, FhirClientFactory clientFactory, PatientIndex patientIndex,
+                                 SearchMetrics metrics, SearchTracing tracing, HapiLimiter limiter, @ConfigProperty(name = "search.hapi.page-size", defaultValue = "50") int pageSize,
+                                 @ConfigProperty(name = "search.condition.codes-per-query", defaultValue = "20") int codesPerQuery,
+                                 @ConfigProperty(name = "search.condition.parallelism", defaultValue = "4") int conditionParallelism,
+                                 @ConfigProperty(name = "search.hapi.chained-search", defaultValue = "true") boolean chainedSearch) {
+        this.context = context;
+        this.vertx = vertx;
+        this.httpClient = clientFactory.createHttpClient(vertx);
+        this.client = WebClient.wrap(httpClient);
+        this.serverUrl = clientFactory.getServerUrl();
+        this.pageSize = pageSize;
+        this.codesPerQuery = codesPerQuery;
+        this.conditionParallelism = conditionParallelism;
+        this.chainedSearch = chainedSearch;
+        this.patientIndex = patientIndex;
+        this.metrics = metrics;
+        this.tracing = tracing;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Multi<Patient> getPatientsByName(String name, Projection fields) {
+        if (patientIndex.isReady()) {
+            return getPatientsById(patientIndex.search(name, null), fields);
+        }
+        return processPatients(ResourceType.Patient, client.getAbs(serverUrl + "/Patient")
+                .addQueryParam("identifier", PATIENT_SYSTEM + "|")
+                .addQueryParam("name:contains", name)
+                .addQueryParam("_sort", "name")
+                .addQueryParam("_count", String.valueOf(pageSize))
+                .addQueryParam("_elements", String.join(",", fields.elements())));
+    }
+
+    @Override
+    public Multi<Patient> getPatientsByNameAndPractitionerIdentifier(String name, String identifierValue, Projection fields) {
+        if (patientIndex.isReady()) {
+            return getPractitionerByIdentifier(identifierValue)
+                .onItem().transformToMulti(practitioner -> practitioner == null
+                        ? Multi.createFrom().empty()
+                        : getPatientsById(patientIndex.search(name, practitioner.getIdElement().getIdPart()), fields));
+        }
+        return processPatients(ResourceType.Patient, byPractitioner(ResourceType.Patient, identifierValue, (parameter, value) -> client.getAbs(serverUrl + "/Patient")
+                    .addQueryParam("identifier", PATIENT_SYSTEM + "|")
+                    .addQueryParam("name:contains", name)
+                    .addQueryParam(parameter, value)
+                    .addQueryParam("_sort", "name")
+                    .addQueryParam("_count", String.valueOf(pageSize))
+                    .addQueryParam("_elements", String.join(",", fields.elements()))));
+    }
+
+    @Override
+    public Multi<Patient> getPatientsByConditionCodes(List<String> codes, Projection fields) {
+        return HealthService.fanOut(codes, codesPerQuery, conditionParallelism, chunk -> processPatients(ResourceType.Condition, client.getAbs(serverUrl + "/Condition")
+                    .addQueryParam("code", HealthService.conditionCodes(chunk))
+                    .addQueryParam("_include", "Condition:subject")
+                    .addQueryParam("_count", String.valueOf(pageSize))
+                    .addQueryParam("_elements", String.join(",", fields.elements()))))
+                .plug(PatientIdSet::distinct);
+    }
+
+    @Override
+    public Multi<Patient> getPatientsByConditionCodesAndPractitionerIdentifier(List<String> codes, String identifierValue, Projection fields) {
+        return HealthService.fanOut(codes, codesPerQuery, conditionParallelism, chunk -> processPatients(ResourceType.Condition,
+                    byPractitioner(ResourceType.Condition, identifierValue, (parameter, value) -> client.getAbs(serverUrl + "/Condition")
+                        .addQueryParam("code", HealthService.conditionCodes(chunk))
+                        .addQueryParam("subject:Patient." + parameter, value)
+                        .addQueryParam("_include", "Condition:subject")
+                        .addQueryParam("_count", String.valueOf(pageSize))
+                        .addQueryParam("_elements", String.join(",", fields.elements())))))
+            .plug(PatientIdSet::distinct);
+    }
+
+    @Override
+    public Multi<Practitioner> getPractitionersByName(String name, Projection fields) {
+        HttpRequest<Buffer> search = client.getAbs(serverUrl + "/Practitioner")
+                .addQueryParam("identifier", PRACTITIONER_SYSTEM + "|")
+                .addQueryParam("name:contains", name);
+        if (fields.has(Projection.Field.Role)) {
+            search.addQueryParam("_revinclude", "PractitionerRole:practitioner");
+        }
+        return pages(ResourceType.Practitioner, search
+                    .addQueryParam("_sort", "name")
+                    .addQueryParam("_count", String.valueOf(pageSize))
+                    .addQueryParam("_elements", String.join(",", fields.elements())))
+                .onItem().transformToIterable(HealthService::getPractitioners);
+    }
+
+    /**
+     * Looks up the practitioner with the given HSA identifier, emitting null if there is none. Only found
+     * practitioners are cached, so a practitioner created after a miss is found on the next lookup.
+     */
+    public Uni<Practitioner> getPractitionerByIdentifier(String identifierValue) {
+        return findPractitionerByIdentifier(identifierValue)
+                .onFailure(ResourceNotFoundException.class).recoverWithNull();
+    }
+
+    @CacheResult(cacheName = "reactive-practitioner-by-identifier")
+    Uni<Practitioner> findPractitionerByIdentifier(String identifierValue) {
+        return fetch(FhirOperation.PractitionerLookup, ResourceType.Practitioner, 0, client.getAbs(serverUrl + "/Practitioner")
+                    .addQueryParam("identifier", PRACTITIONER_SYSTEM + "|" + identifierValue)
+                    .addQueryParam("_elements", "identifier"))
+                .onItem().transform(bundle -> {
+                    if (bundle.getEntry().isEmpty()) {
+                        throw new ResourceNotFoundException("No practitioner with identifier " + identifierValue);
+                    }
+                    return (Practitioner) bundle.getEntry().get(0).getResource();
+                });
+    }
+
+    /**
+     * Fetches the first page of a search filtered on the general practitioner with the given identifier, using a
+     * chained {@code general-practitioner:Practitioner.identifier} parameter. If HAPI rejects the chain itself, the
+     * practitioner is looked up first and matched by id from then on. Any other failure is passed on.
+     */
+    private Uni<Bundle> byPractitioner(ResourceType resourceType, String identifierValue,
+                                       BiFunction<String, String, HttpRequest<Buffer>> search) {
+        Uni<Bundle> twoStep = getPractitionerByIdentifier(identifierValue)
+                .onItem().transformToUni(practitioner -> practitioner == null
+                        ? Uni.createFrom().item(new Bundle())
+                        : fetch(FhirOperation.Search, resourceType, 0,
+                                search.apply("general-practitioner", "Practitioner/" + practitioner.getIdElement().getIdPart())));
+        if (!chainedSearch) {
+            return twoStep;
+        }
+        return fetch(FhirOperation.Search, resourceType, 0,
+                    search.apply("general-practitioner:Practitioner.identifier", PRACTITIONER_SYSTEM + "|" + identifierValue))
+            .onFailure(HealthService::rejectsChain).recoverWithUni(failure -> {
+                Log.warnf("HAPI rejected the chained practitioner search, falling back to a practitioner lookup: %s", failure.getMessage());
+                chainedSearch = false;
+                return twoStep;
+            });
+    }
+
+    private Multi<Patient> getPatientsById(List<String> ids, Projection fields) {
+        return Multi.createFrom().iterable(PatientIndex.partition(ids, pageSize))
+                .onItem().transformToUniAndConcatenate(chunk -> fetch(FhirOperation.Search, ResourceType.Patient, 0, client.getAbs(serverUrl + "/Patient")
+                            .addQueryParam("_id", String.join(",", chunk))
+                            .addQueryParam("_count", String.valueOf(chunk.size()))
+                            .addQueryParam("_elements", String.join(",", fields.elements())))
+                        .onItem().transform(bundle -> PatientIndex.inOrder(chunk, HealthService.getPatients(bundle))))
+                .onItem().disjoint();
+    }
+
+    private Multi<Patient> processPatients(ResourceType resourceType, HttpRequest<Buffer> search) {
+        return processPatients(resourceType, fetch(FhirOperation.Search, resourceType, 0, search));
+    }
+
+    private Multi<Patient> processPatients(ResourceType resourceType, Uni<Bundle> first) {
+        return pages(resourceType, first).onItem().transformToIterable(HealthService::getPatients);
+    }
+
+    private Multi<Bundle> pages(ResourceType resourceType, HttpRequest<Buffer> search) {
+        return pages(resourceType, fetch(FhirOperation.Search, resourceType, 0, search));
+    }
+
+    private Multi<Bundle> pages(ResourceType resourceType, Uni<Bundle> first) {
+        return first.onItem().transformToMulti(firstPage -> Multi.createBy().repeating()
+                    .uni(() -> new NextPage(firstPage), next -> next.index++ == 0
+                            ? Uni.createFrom().item(next.bundle)
+                            : fetch(FhirOperation.Next, resourceType, next.index - 1, client.getAbs(next.bundle.getLink(Bundle.LINK_NEXT).getUrl()))
+                                    .invoke(bundle -> next.bundle = bundle))
+                    .whilst(bundle -> bundle.getLink(Bundle.LINK_NEXT) != null))
+                .plug(pages -> metrics.pages(resourceType, pages));
+    }
+
+    private Uni<Bundle> fetch(FhirOperation operation, ResourceType resourceType, int page, HttpRequest<Buffer> request) {
+        return limiter.call(resourceType, Uni.createFrom().deferred(() -> {
+            Span span = tracing.start(operation, resourceType, page);
+            tracing.inject(span, request::putHeader);
+            return metrics.time(operation, resourceType, send(request.putHeader("Accept", FHIR_JSON)))
+                    .onItem().transformToUni(response -> parseBundle(response)
+                            .invoke(bundle -> tracing.end(span, bundle, response.body().length(), null)))
+                    .onFailure().invoke(failure -> tracing.end(span, null, -1, failure))
+                    .onCancellation().invoke(span::end);
+        }));
+    }
+
+    /**
+     * Sends the request with the core HTTP client so that cancelling the returned {@code Uni} resets it. Cancelling
+     * the {@code Uni} of {@link HttpRequest#send()} only stops listening for the response, and the request keeps its
+     * pooled connection until HAPI has answered. The web client, which wraps the same client, only builds requests.
+     */
+    private Uni<HapiResponse> send(HttpRequest<Buffer> request) {
+        RequestOptions options = new RequestOptions()
+                .setMethod(request.method())
+                .setHost(request.host())
+                .setPort(request.port())
+                .setSsl(request.ssl())
+                .setURI(uri(request))
+                .setHeaders(request.headers().getDelegate());
+        return Uni.createFrom().emitter(emitter -> {
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicReference<HttpClientRequest> sent = new AtomicReference<>();
+            emitter.onTermination(() -> {
+                if (done.compareAndSet(false, true) && sent.get() != null) {
+                    sent.get().reset();
+                }
+            });
+            httpClient.getDelegate().request(options)
+                    .onSuccess(clientRequest -> {
+                        sent.set(clientRequest);
+                        if (done.get()) {
+                            clientRequest.reset();
+                            return;
+                        }
+                        clientRequest.send()
+                                .compose(response -> response.body()
+                                        .map(body -> new HapiResponse(response.statusCode(), Buffer.newInstance(body))))
+                                .onComplete(result -> {
+                                    if (!done.compareAndSet(false, true)) {
+                                        return;
+                                    }
+                                    if (result.succeeded()) {
+                                        emitter.complete(result.result());
+                                    } else {
+                                        emitter.fail(result.cause());
+                                    }
+                                });
+                    })
+                    .onFailure(failure -> {
+                        if (done.compareAndSet(false, true)) {
+                            emitter.fail(failure);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Builds the request URI the way the web client would. Its query parameters include those of the URI it was
+     * created with, such as the query of a next-page link, so the query is taken from them alone.
+     */
+    private static String uri(HttpRequest<Buffer> request) {
+        int query = request.uri().indexOf('?');
+        QueryStringEncoder encoder = new QueryStringEncoder(query < 0 ? request.uri() : request.uri().substring(0, query));
+        request.queryParams().getDelegate().forEach(param -> encoder.addParam(param.getKey(), param.getValue()));
+        return encoder.toString();
+    }
+
+    private Uni<Bundle> parseBundle(HapiResponse response) {
+        if (response.statusCode() >= 400) {
+            return Uni.createFrom().failure(BaseServerResponseException.newInstance(response.statusCode(), response.bodyAsString()));
+        }
+        String body = response.bodyAsString();
+        return vertx.executeBlocking(() -> context.newJsonParser().parseResource(Bundle.class, body), false);
+    }
+
+    private record HapiResponse(int statusCode, Buffer body) {
+        String bodyAsString() {
+            return body.toString();
+        }
+    }
+
+    private static class NextPage {
+        private Bundle bundle;
+        private int index;
+
+        NextPage(Bundle bundle) {
+            this.bundle = bundle;
+        }
+    }
+}
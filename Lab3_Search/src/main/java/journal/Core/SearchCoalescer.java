@@ -0,0 +1,283 @@
+package journal.Core;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.helpers.Subscriptions;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical searches share one upstream walk over HAPI. The first subscriber starts
+ * the search, later subscribers replay what has already been emitted and then follow along live.
+ * The upstream is read as fast as the fastest subscriber requests, but never more than
+ * {@code search.coalescing.buffer-size} results ahead of the slowest, so a shared search holds at most
+ * that many results. Once it has emitted more than that, results every subscriber has received are
+ * dropped and new identical searches start their own walk. The upstream is cancelled once every
+ * subscriber has gone, and a finished search is forgotten so the next request fetches fresh results.
+ */
+@ApplicationScoped
+public class SearchCoalescer {
+    private final ConcurrentMap<String, Flight<?>> flights = new ConcurrentHashMap<>();
+
+    @ConfigProperty(name = "search.coalescing.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "search.coalescing.buffer-size", defaultValue = "256")
+    int bufferSize;
+
+    @SuppressWarnings("unchecked")
+    public <T> Multi<T> coalesce(String key, Supplier<Multi<T>> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        return Multi.createFrom().deferred(() -> {
+            Flight<T> flight = (Flight<T>) flights.compute(key, (k, existing) -> existing != null && existing.join()
+                    ? existing
+                    : new Flight<>(k, search.get()));
+            return Multi.createFrom().publisher(flight);
+        });
+    }
+
+    int inFlight() {
+        return flights.size();
+    }
+
+    private static long add(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private class Flight<T> implements Flow.Publisher<T>, Flow.Subscriber<T> {
+        private final String key;
+        private final Multi<T> search;
+        private final List<T> results = new ArrayList<>();
+        private final List<Member> members = new ArrayList<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private Flow.Subscription upstream;
+        private long dropped;
+        private long requested;
+        private int joining = 1;
+        private boolean started;
+        private boolean abandoned;
+        private boolean done;
+        private Throwable failure;
+
+        Flight(String key, Multi<T> search) {
+            this.key = key;
+            this.search = search;
+        }
+
+        synchronized boolean join() {
+            if (abandoned || dropped > 0 || emitted() > bufferSize) {
+                return false;
+            }
+            joining++;
+            return true;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super T> downstream) {
+            Member member = new Member(downstream);
+            boolean start;
+            synchronized (this) {
+                joining--;
+                members.add(member);
+                start = !started;
+                started = true;
+            }
+            downstream.onSubscribe(member);
+            if (start) {
+                search.subscribe().withSubscriber(this);
+            } else {
+                drain();
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            boolean cancel;
+            synchronized (this) {
+                upstream = subscription;
+                cancel = abandoned;
+            }
+            if (cancel) {
+                subscription.cancel();
+            } else {
+                drain();
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            synchronized (this) {
+                results.add(item);
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable failure) {
+            synchronized (this) {
+                this.failure = failure;
+                done = true;
+            }
+            flights.remove(key, this);
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                done = true;
+            }
+            flights.remove(key, this);
+            drain();
+        }
+
+        private long emitted() {
+            return dropped + results.size();
+        }
+
+        /**
+         * Delivers results to members with outstanding demand, completes members that have seen every result of a
+         * finished search, and requests more from upstream. Only one thread drains at a time, so every member
+         * receives its results in order.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                List<Member> current;
+                synchronized (this) {
+                    current = List.copyOf(members);
+                }
+                for (Member member : current) {
+                    T item;
+                    while ((item = member.next()) != null) {
+                        member.downstream.onNext(item);
+                    }
+                    if (member.finished()) {
+                        if (failure != null) {
+                            member.downstream.onError(failure);
+                        } else {
+                            member.downstream.onComplete();
+                        }
+                    }
+                }
+                long more = demand();
+                if (more > 0) {
+                    upstream.request(more);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Drops results every member has received once the replay window is past, and returns how many more
+         * results to request: up to what the fastest member wants, but no more than {@link #bufferSize} ahead of
+         * the slowest member, or of the start while a joining member has yet to subscribe.
+         */
+        private synchronized long demand() {
+            if (upstream == null || done || abandoned || members.isEmpty() && joining == 0) {
+                return 0;
+            }
+            long slowest = joining > 0 ? dropped : Long.MAX_VALUE;
+            long fastest = 0;
+            for (Member member : members) {
+                slowest = Math.min(slowest, member.index);
+                fastest = Math.max(fastest, add(member.index, member.demand));
+            }
+            if (emitted() > bufferSize && slowest > dropped) {
+                results.subList(0, (int) (slowest - dropped)).clear();
+                dropped = slowest;
+            }
+            long target = Math.min(fastest, add(slowest, bufferSize));
+            if (target <= requested) {
+                return 0;
+            }
+            long more = target - requested;
+            requested = target;
+            return more;
+        }
+
+        private void leave(Member member) {
+            boolean last;
+            synchronized (this) {
+                if (!members.remove(member)) {
+                    return;
+                }
+                last = members.isEmpty() && joining == 0 && !done;
+                abandoned = last;
+            }
+            if (last) {
+                flights.remove(key, this);
+                Flow.Subscription subscription;
+                synchronized (this) {
+                    subscription = upstream;
+                }
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+            } else {
+                drain();
+            }
+        }
+
+        private class Member implements Flow.Subscription {
+            private final Flow.Subscriber<? super T> downstream;
+            private long index;
+            private long demand;
+
+            Member(Flow.Subscriber<? super T> downstream) {
+                this.downstream = downstream;
+            }
+
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    cancel();
+                    downstream.onError(Subscriptions.getInvalidRequestException());
+                    return;
+                }
+                synchronized (Flight.this) {
+                    demand = add(demand, n);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                leave(this);
+            }
+
+            T next() {
+                synchronized (Flight.this) {
+                    if (demand == 0 || index == emitted() || !members.contains(this)) {
+                        return null;
+                    }
+                    T item = results.get((int) (index - dropped));
+                    index++;
+                    if (demand != Long.MAX_VALUE) {
+                        demand--;
+                    }
+                    return item;
+                }
+            }
+
+            boolean finished() {
+                synchronized (Flight.this) {
+                    return done && index == emitted() && members.remove(this);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package journal.Core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import journal.Core.Model.PatientData;
+import journal.Core.Model.PractitionerData;
+import org.hl7.fhir.r4.model.Address;
+import org.hl7.fhir.r4.model.ContactPoint;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+
+/**
+ * Writes the JSON of SSE search events with a per-thread {@link JsonGenerator} instead of
+ * reflective data binding. The output is identical to serializing {@link PatientData} or
+ * {@link PractitionerData} with Jackson, and patients and practitioners can be written straight from the HAPI model.
+ * With a narrower {@link Projection}, only the selected fields are extracted and written.
+ */
+@ApplicationScoped
+public class SearchEventWriter {
+    private final JsonFactory factory;
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(this::createOutput);
+
+    private record Output(StringWriter writer, JsonGenerator generator) {
+    }
+
+    @Inject
+    public SearchEventWriter(ObjectMapper objectMapper) {
+        this.factory = objectMapper.getFactory();
+    }
+
+    public String writePatient(Patient patient) {
+        return writePatient(patient, Projection.PATIENT);
+    }
+
+    public String writePatient(Patient patient, Projection fields) {
+        Address address = fields.hasAddress() ? HealthService.getAddress(patient) : null;
+        return writePatient(fields,
+                fields.has(Projection.Field.Id) ? HealthService.getSsn(patient) : null,
+                fields.has(Projection.Field.FullName) ? HealthService.getFullName(patient) : null,
+                fields.has(Projection.Field.Gender) ? HealthService.getGender(patient) : null,
+                fields.has(Projection.Field.Email) ? HealthService.getContact(patient.getTelecom(), ContactPoint.ContactPointSystem.EMAIL) : null,
+                fields.has(Projection.Field.Phone) ? HealthService.getContact(patient.getTelecom(), ContactPoint.ContactPointSystem.PHONE) : null,
+                fields.has(Projection.Field.Line) ? HealthService.getLine(address) : null,
+                fields.has(Projection.Field.City) ? HealthService.getCity(address) : null,
+                fields.has(Projection.Field.PostalCode) ? HealthService.getPostalCode(address) : null);
+    }
+
+    public String write(PatientData patient) {
+        return write(patient, Projection.PATIENT);
+    }
+
+    public String write(PatientData patient, Projection fields) {
+        return writePatient(fields, patient.getId(), patient.getFullName(), patient.getGender(), patient.getEmail(), patient.getPhone(),
+                patient.getLine(), patient.getCity(), patient.getPostalCode());
+    }
+
+    public String write(PractitionerData practitioner) {
+        return write(practitioner, Projection.PRACTITIONER);
+    }
+
+    public String write(PractitionerData practitioner, Projection fields) {
+        return writePractitioner(fields, practitioner.getId(), practitioner.getFullName(), practitioner.getRole(),
+                practitioner.getEmail(), practitioner.getPhone());
+    }
+
+    /**
+     * Writes the practitioner with the role given by {@code roles}, which is only asked when the role is selected.
+     */
+    public String writePractitioner(Practitioner practitioner, Projection fields, Function<Practitioner, String> roles) {
+        return writePractitioner(fields,
+                fields.has(Projection.Field.Id) ? HealthService.getHsaId(practitioner) : null,
+                fields.has(Projection.Field.FullName) ? HealthService.getFullName(practitioner) : null,
+                fields.has(Projection.Field.Role) ? roles.apply(practitioner) : null,
+                fields.has(Projection.Field.Email) ? HealthService.getContact(practitioner, ContactPoint.ContactPointSystem.EMAIL) : null,
+                fields.has(Projection.Field.Phone) ? HealthService.getContact(practitioner, ContactPoint.ContactPointSystem.PHONE) : null);
+    }
+
+    private String writePractitioner(Projection fields, String id, String fullName, String role, String email, String phone) {
+        Output output = outputs.get();
+        try {
+            JsonGenerator generator = output.generator();
+            generator.writeStartObject();
+            writeField(generator, fields, Projection.Field.Id, id);
+            writeField(generator, fields, Projection.Field.FullName, fullName);
+            writeField(generator, fields, Projection.Field.Role, role);
+            writeField(generator, fields, Projection.Field.Email, email);
+            writeField(generator, fields, Projection.Field.Phone, phone);
+            generator.writeEndObject();
+            return take(output);
+        } catch (IOException e) {
+            outputs.remove();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String writeError(String error, String message) {
+        Output output = outputs.get();
+        try {
+            JsonGenerator generator = output.generator();
+            generator.writeStartObject();
+            generator.writeStringField("error", error);
+            generator.writeStringField("message", message);
+            generator.writeEndObject();
+            return take(output);
+        } catch (IOException e) {
+            outputs.remove();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String writePatient(Projection fields, String id, String fullName, Gender gender, String email, String phone,
+                                String line, String city, String postalCode) {
+        Output output = outputs.get();
+        try {
+            JsonGenerator generator = output.generator();
+            generator.writeStartObject();
+            writeField(generator, fields, Projection.Field.Id, id);
+            writeField(generator, fields, Projection.Field.FullName, fullName);
+            writeField(generator, fields, Projection.Field.Gender, gender != null ? gender.name() : null);
+            writeField(generator, fields, Projection.Field.Email, email);
+            writeField(generator, fields, Projection.Field.Phone, phone);
+            writeField(generator, fields, Projection.Field.Line, line);
+            writeField(generator, fields, Projection.Field.City, city);
+            writeField(generator, fields, Projection.Field.PostalCode, postalCode);
+            generator.writeEndObject();
+            return take(output);
+        } catch (IOException e) {
+            outputs.remove();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeField(JsonGenerator generator, Projection fields, Projection.Field field, String value) throws IOException {
+        if (fields.has(field)) {
+            generator.writeStringField(field.getJsonName(), value);
+        }
+    }
+
+    private static String take(Output output) throws IOException {
+        output.generator().flush();
+        StringBuffer buffer = output.writer().getBuffer();
+        String json = buffer.toString();
+        buffer.setLength(0);
+        return json;
+    }
+
+    private Output createOutput() {
+        try {
+            StringWriter writer = new StringWriter(256);
+            JsonGenerator generator = factory.createGenerator(writer);
+            generator.setRootValueSeparator(null);
+            return new Output(writer, generator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package journal.Core;
+
+import io.quarkus.virtual.threads.VirtualThreads;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+@ApplicationScoped
+public class SearchExecutor {
+
+    @ConfigProperty(name = "search.execution-mode", defaultValue = "reactive")
+    ExecutionMode executionMode;
+
+    @Inject
+    @VirtualThreads
+    ExecutorService virtualThreads;
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public Executor getExecutor() {
+        return executionMode == ExecutionMode.VirtualThread ? virtualThreads : Infrastructure.getDefaultWorkerPool();
+    }
+}
@@ -0,0 +1,148 @@
+package journal.Core;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.ResourceType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Meters for HAPI round-trips and SSE search streams. Meters are registered once per tag
+ * combination and cached, so recording costs a map lookup and two clock reads.
+ */
+@ApplicationScoped
+public class SearchMetrics {
+    static final SearchMetrics NONE = new SearchMetrics(new CompositeMeterRegistry());
+
+    private final MeterRegistry registry;
+    private final Map<FhirOperation, ConcurrentMap<ResourceType, Timer>> requests = new EnumMap<>(FhirOperation.class);
+    private final ConcurrentMap<ResourceType, DistributionSummary> pagesPerQuery = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ResourceType, DistributionSummary> resourcesPerPage = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, StreamMeters> streams = new ConcurrentHashMap<>();
+
+    private record StreamMeters(Timer firstEvent, Timer completed, Timer failed, Timer cancelled, AtomicInteger active) {
+    }
+
+    @Inject
+    public SearchMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (FhirOperation operation : FhirOperation.values()) {
+            requests.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    public <T> T time(FhirOperation operation, ResourceType resourceType, Supplier<T> request) {
+        Timer timer = requestTimer(operation, resourceType);
+        long start = System.nanoTime();
+        try {
+            return request.get();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public <T> Uni<T> time(FhirOperation operation, ResourceType resourceType, Uni<T> request) {
+        Timer timer = requestTimer(operation, resourceType);
+        return Uni.createFrom().deferred(() -> {
+            long start = System.nanoTime();
+            return request.onTermination().invoke(() -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    public Multi<Bundle> pages(ResourceType resourceType, Multi<Bundle> pages) {
+        DistributionSummary queryPages = pagesPerQuery.computeIfAbsent(resourceType, type -> DistributionSummary.builder("search.query.pages")
+                .description("Pages fetched from HAPI per search")
+                .tag("resource", type.name())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(1000.0)
+                .register(registry));
+        DistributionSummary pageResources = resourcesPerPage.computeIfAbsent(resourceType, type -> DistributionSummary.builder("search.page.resources")
+                .description("Resources returned by HAPI per search page")
+                .tag("resource", type.name())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(1000.0)
+                .register(registry));
+        return Multi.createFrom().deferred(() -> {
+            AtomicInteger count = new AtomicInteger();
+            return pages
+                    .onItem().invoke(page -> {
+                        count.incrementAndGet();
+                        pageResources.record(page.getEntry().size());
+                    })
+                    .onTermination().invoke(() -> queryPages.record(count.get()));
+        });
+    }
+
+    public <T> Multi<T> stream(String endpoint, Multi<T> events) {
+        StreamMeters meters = streams.computeIfAbsent(endpoint, this::streamMeters);
+        return Multi.createFrom().deferred(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            meters.active().incrementAndGet();
+            return events
+                    .onItem().invoke(() -> {
+                        if (first.get() && first.compareAndSet(true, false)) {
+                            meters.firstEvent().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .onTermination().invoke((failure, cancelled) -> {
+                        meters.active().decrementAndGet();
+                        Timer duration = cancelled ? meters.cancelled() : failure != null ? meters.failed() : meters.completed();
+                        duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    });
+        });
+    }
+
+    private Timer requestTimer(FhirOperation operation, ResourceType resourceType) {
+        return requests.get(operation).computeIfAbsent(resourceType, type -> Timer.builder("hapi.client.requests")
+                .description("Round-trips to HAPI")
+                .tag("operation", operation.getTag())
+                .tag("resource", type.name())
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private StreamMeters streamMeters(String endpoint) {
+        AtomicInteger active = new AtomicInteger();
+        Gauge.builder("search.stream.active", active, AtomicInteger::get)
+                .description("Open SSE search streams")
+                .tag("endpoint", endpoint)
+                .register(registry);
+        return new StreamMeters(
+                Timer.builder("search.stream.first-event")
+                        .description("Time from subscription to the first event of an SSE search stream")
+                        .tag("endpoint", endpoint)
+                        .publishPercentileHistogram()
+                        .register(registry),
+                streamDuration(endpoint, "completed"),
+                streamDuration(endpoint, "failed"),
+                streamDuration(endpoint, "cancelled"),
+                active);
+    }
+
+    private Timer streamDuration(String endpoint, String outcome) {
+        return Timer.builder("search.stream.duration")
+                .description("Total duration of an SSE search stream")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
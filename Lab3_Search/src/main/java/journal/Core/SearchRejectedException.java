@@ -0,0 +1,19 @@
+package journal.Core;
+
+import org.hl7.fhir.r4.model.ResourceType;
+
+/**
+ * Thrown when a HAPI request is rejected because its bulkhead is at the concurrency limit.
+ */
+public class SearchRejectedException extends RuntimeException {
+    private final ResourceType resourceType;
+
+    public SearchRejectedException(ResourceType resourceType, int limit) {
+        super("Too many concurrent " + resourceType.name() + " searches against HAPI (limit " + limit + ")", null, false, false);
+        this.resourceType = resourceType;
+    }
+
+    public ResourceType getResourceType() {
+        return resourceType;
+    }
+}
@@ -0,0 +1,153 @@
+package journal.Core;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.smallrye.mutiny.Multi;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import journal.Core.Model.CompactJsonList;
+import journal.Core.Model.CompactPatientList;
+import journal.Core.Model.PatientData;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Short-lived cache of complete, already mapped search results, keyed by normalized query.
+ * Entries are weighed by their estimated heap size, and only searches that complete are cached.
+ * A search whose results grow past {@code max-entry-weight} is streamed without being buffered further,
+ * so each concurrent stream holds at most that much on the heap.
+ * Results are stored in the form returned by the compactor, such as a columnar {@link CompactPatientList} of patients
+ * or a {@link CompactJsonList} of serialized events.
+ */
+@ApplicationScoped
+public class SearchResultCache {
+    private static final int OBJECT_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int STRING_BYTES = 40;
+
+    private final boolean enabled;
+    private final long maxWeight;
+    private final long maxEntryWeight;
+    private final Cache<String, CachedResult> cache;
+
+    private record CachedResult(List<?> items, long weight) {
+    }
+
+    @Inject
+    public SearchResultCache(MeterRegistry registry,
+                             @ConfigProperty(name = "search.result-cache.enabled", defaultValue = "true") boolean enabled,
+                             @ConfigProperty(name = "search.result-cache.max-weight", defaultValue = "64M") MemorySize maxWeight,
+                             @ConfigProperty(name = "search.result-cache.max-entry-weight", defaultValue = "4M") MemorySize maxEntryWeight,
+                             @ConfigProperty(name = "search.result-cache.expire-after-write", defaultValue = "2M") Duration expireAfterWrite) {
+        this.enabled = enabled;
+        this.maxWeight = maxWeight.asLongValue();
+        this.maxEntryWeight = Math.min(maxEntryWeight.asLongValue(), this.maxWeight);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(this.maxWeight)
+                .weigher((String key, CachedResult result) -> (int) Math.min(Integer.MAX_VALUE, sizeOf(key) + result.weight()))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "search-results");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static String key(String endpoint, String... parameters) {
+        return endpoint + "?" + String.join("&", parameters);
+    }
+
+    public static String normalize(String value) {
+        return value != null ? value.toLowerCase(Locale.ROOT) : "";
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Multi<T> stream(String key, ToLongFunction<T> weigher, Function<List<T>, List<T>> compactor,
+                               Supplier<Multi<T>> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        return Multi.createFrom().deferred(() -> {
+            CachedResult cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return Multi.createFrom().iterable((List<T>) cached.items());
+            }
+            ResultCollector<T> collector = new ResultCollector<>(weigher, compactor);
+            return search.get()
+                    .onItem().invoke(collector::add)
+                    .onCompletion().invoke(() -> collector.putInto(key));
+        });
+    }
+
+    public void invalidate(String endpoint) {
+        String prefix = key(endpoint);
+        cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    long size() {
+        return cache.estimatedSize();
+    }
+
+    public static long weigh(String json) {
+        return sizeOf(json);
+    }
+
+    public static long weigh(PatientData patient) {
+        return OBJECT_HEADER_BYTES + 8 * REFERENCE_BYTES
+                + sizeOf(patient.getId()) + sizeOf(patient.getFullName()) + sizeOf(patient.getEmail()) + sizeOf(patient.getPhone())
+                + sizeOf(patient.getLine()) + sizeOf(patient.getCity()) + sizeOf(patient.getPostalCode());
+    }
+
+    private static long sizeOf(String value) {
+        return value != null ? STRING_BYTES + value.length() : 0;
+    }
+
+    private class ResultCollector<T> {
+        private final ToLongFunction<T> weigher;
+        private final Function<List<T>, List<T>> compactor;
+        private List<T> items = new ArrayList<>();
+        private long weight;
+
+        ResultCollector(ToLongFunction<T> weigher, Function<List<T>, List<T>> compactor) {
+            this.weigher = weigher;
+            this.compactor = compactor;
+        }
+
+        void add(T item) {
+            if (items == null) {
+                return;
+            }
+            weight += REFERENCE_BYTES + weigher.applyAsLong(item);
+            if (weight > maxEntryWeight) {
+                items = null;
+                return;
+            }
+            items.add(item);
+        }
+
+        void putInto(String key) {
+            if (items != null) {
+                List<T> compacted = compactor.apply(items);
+                cache.put(key, new CachedResult(compacted,
+                        compacted instanceof CompactPatientList patients ? patients.estimatedBytes()
+                                : compacted instanceof CompactJsonList events ? events.estimatedBytes() : weight));
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package journal.Core;
+
+import io.smallrye.mutiny.Multi;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+
+import java.util.List;
+
+public interface SearchService {
+    Multi<Patient> getPatientsByName(String name, Projection fields);
+
+    Multi<Patient> getPatientsByNameAndPractitionerIdentifier(String name, String identifierValue, Projection fields);
+
+    Multi<Patient> getPatientsByConditionCodes(List<String> codes, Projection fields);
+
+    Multi<Patient> getPatientsByConditionCodesAndPractitionerIdentifier(List<String> codes, String identifierValue, Projection fields);
+
+    Multi<Practitioner> getPractitionersByName(String name, Projection fields);
+
+    default Multi<Patient> getPatientsByName(String name) {
+        return getPatientsByName(name, Projection.PATIENT);
+    }
+
+    default Multi<Patient> getPatientsByNameAndPractitionerIdentifier(String name, String identifierValue) {
+        return getPatientsByNameAndPractitionerIdentifier(name, identifierValue, Projection.PATIENT);
+    }
+
+    default Multi<Patient> getPatientsByConditionCodes(List<String> codes) {
+        return getPatientsByConditionCodes(codes, Projection.PATIENT);
+    }
+
+    default Multi<Patient> getPatientsByConditionCodesAndPractitionerIdentifier(List<String> codes, String identifierValue) {
+        return getPatientsByConditionCodesAndPractitionerIdentifier(codes, identifierValue, Projection.PATIENT);
+    }
+
+    default Multi<Practitioner> getPractitionersByName(String name) {
+        return getPractitionersByName(name, Projection.PRACTITIONER);
+    }
+}
@@ -0,0 +1,108 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.api.IClientInterceptor;
+import ca.uhn.fhir.rest.client.api.IHttpRequest;
+import ca.uhn.fhir.rest.client.api.IHttpResponse;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.ResourceType;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Creates a client span per HAPI round-trip. As a HAPI client interceptor it also propagates the
+ * trace context onto the outbound request and records the size of the response body, when the server sends a
+ * {@code Content-Length}. Chunked responses get no size, because measuring them would mean buffering the whole
+ * page before it is parsed.
+ */
+@ApplicationScoped
+public class SearchTracing implements IClientInterceptor {
+    static final SearchTracing NONE = new SearchTracing(OpenTelemetry.noop());
+
+    static final AttributeKey<String> OPERATION = AttributeKey.stringKey("fhir.operation");
+    static final AttributeKey<String> RESOURCE_TYPE = AttributeKey.stringKey("fhir.resource_type");
+    static final AttributeKey<Long> PAGE_INDEX = AttributeKey.longKey("fhir.page.index");
+    static final AttributeKey<Long> PAGE_ENTRIES = AttributeKey.longKey("fhir.page.entries");
+    static final AttributeKey<Long> RESPONSE_BYTES = AttributeKey.longKey("http.response.body.size");
+
+    private final Tracer tracer;
+    private final TextMapPropagator propagator;
+
+    @Inject
+    public SearchTracing(OpenTelemetry openTelemetry) {
+        this.tracer = openTelemetry.getTracer("journal.search");
+        this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+    }
+
+    public Bundle trace(FhirOperation operation, ResourceType resourceType, int page, Supplier<Bundle> request) {
+        Span span = start(operation, resourceType, page);
+        try (Scope scope = span.makeCurrent()) {
+            Bundle bundle = request.get();
+            end(span, bundle, -1, null);
+            return bundle;
+        } catch (RuntimeException e) {
+            end(span, null, -1, e);
+            throw e;
+        }
+    }
+
+    public Span start(FhirOperation operation, ResourceType resourceType, int page) {
+        return tracer.spanBuilder("HAPI " + operation.getTag() + " " + resourceType.name())
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute(OPERATION, operation.getTag())
+                .setAttribute(RESOURCE_TYPE, resourceType.name())
+                .setAttribute(PAGE_INDEX, (long) page)
+                .startSpan();
+    }
+
+    public void inject(Span span, BiConsumer<String, String> headers) {
+        propagator.inject(Context.current().with(span), headers, BiConsumer::accept);
+    }
+
+    public void end(Span span, Bundle bundle, long bytes, Throwable failure) {
+        end(span, bundle != null ? bundle.getEntry().size() : -1, bytes, failure);
+    }
+
+    public void end(Span span, int entries, long bytes, Throwable failure) {
+        if (entries >= 0) {
+            span.setAttribute(PAGE_ENTRIES, (long) entries);
+        }
+        if (bytes >= 0) {
+            span.setAttribute(RESPONSE_BYTES, bytes);
+        }
+        if (failure != null) {
+            span.recordException(failure);
+            span.setStatus(StatusCode.ERROR);
+        }
+        span.end();
+    }
+
+    @Override
+    public void interceptRequest(IHttpRequest request) {
+        propagator.inject(Context.current(), request, IHttpRequest::addHeader);
+    }
+
+    @Override
+    public void interceptResponse(IHttpResponse response) {
+        Span span = Span.current();
+        if (!span.isRecording()) {
+            return;
+        }
+        List<String> contentLength = response.getHeaders("Content-Length");
+        if (contentLength != null && !contentLength.isEmpty()) {
+            span.setAttribute(RESPONSE_BYTES, Long.parseLong(contentLength.get(0)));
+        }
+    }
+}
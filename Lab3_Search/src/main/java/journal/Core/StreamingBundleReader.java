@@ -0,0 +1,347 @@
+package journal.Core;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.trace.Span;
+import io.smallrye.mutiny.Multi;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.ResourceType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reads search results from HAPI with a Jackson streaming parser instead of parsing each page into a
+ * {@code Bundle}. The response is decompressed while it is read, and a patient is parsed only when the
+ * subscriber requests it, so at most one entry of a page is held in memory. Non-patient entries are
+ * skipped without being parsed when {@code resourceType} is their first field, as HAPI writes it.
+ * <p>
+ * A page holds its {@link HapiLimiter} permit and its pooled connection until it has been read to the end or
+ * the stream is closed, and the limiter is given the time spent reading it. While the subscriber requests
+ * nothing, the page stays open without reading, since the socket timeout only applies to a blocked read. The
+ * number of connections held that way is bounded by the limiter, because each one keeps its permit.
+ */
+@ApplicationScoped
+public class StreamingBundleReader {
+    private static final String FHIR_JSON = "application/fhir+json";
+
+    private final FhirContext context;
+    private final JsonFactory factory;
+    private final CloseableHttpClient httpClient;
+    private final String serverUrl;
+    private final SearchMetrics metrics;
+    private final SearchTracing tracing;
+    private final HapiLimiter limiter;
+
+    @Inject
+    public StreamingBundleReader(FhirContext context, ObjectMapper objectMapper, CloseableHttpClient httpClient,
+                                 FhirClientFactory clientFactory, SearchMetrics metrics, SearchTracing tracing, HapiLimiter limiter) {
+        this.context = context;
+        this.factory = objectMapper.getFactory();
+        this.httpClient = httpClient;
+        this.serverUrl = clientFactory.getServerUrl();
+        this.metrics = metrics;
+        this.tracing = tracing;
+        this.limiter = limiter;
+    }
+
+    public Multi<Patient> search(ResourceType resourceType, Map<String, String> parameters, Executor executor) {
+        return Multi.createFrom().resource(() -> new PatientStream(resourceType, url(resourceType, parameters)),
+                        stream -> Multi.createFrom().iterable(() -> stream))
+                .withFinalizer(PatientStream::close)
+                .runSubscriptionOn(executor);
+    }
+
+    private String url(ResourceType resourceType, Map<String, String> parameters) {
+        try {
+            URIBuilder builder = new URIBuilder(serverUrl + "/" + resourceType.name());
+            parameters.forEach(builder::addParameter);
+            return builder.build().toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private class PatientStream implements Iterator<Patient> {
+        private final ResourceType resourceType;
+        private final ReentrantLock reading = new ReentrantLock();
+        private volatile boolean closed;
+        private String nextUrl;
+        private int page = -1;
+        private volatile HttpGet request;
+        private CloseableHttpResponse response;
+        private HapiLimiter.Permit permit;
+        private long readNanos;
+        private long resumed;
+        private JsonParser parser;
+        private Span span;
+        private boolean inEntries;
+        private int entries;
+        private Patient next;
+
+        PatientStream(ResourceType resourceType, String url) {
+            this.resourceType = resourceType;
+            this.nextUrl = url;
+        }
+
+        @Override
+        public boolean hasNext() {
+            reading.lock();
+            resumed = System.nanoTime();
+            try {
+                while (next == null) {
+                    if (closed) {
+                        return false;
+                    }
+                    if (parser == null) {
+                        if (nextUrl == null) {
+                            return false;
+                        }
+                        open(nextUrl);
+                    }
+                    next = readPatient();
+                }
+                return true;
+            } catch (IOException e) {
+                fail(e);
+                throw new FhirClientConnectionException(e);
+            } catch (RuntimeException e) {
+                fail(e);
+                throw e;
+            } finally {
+                readNanos += System.nanoTime() - resumed;
+                reading.unlock();
+                if (closed) {
+                    release();
+                }
+            }
+        }
+
+        @Override
+        public Patient next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Patient patient = next;
+            next = null;
+            return patient;
+        }
+
+        private void open(String url) throws IOException {
+            FhirOperation operation = ++page == 0 ? FhirOperation.Search : FhirOperation.Next;
+            HttpGet request = new HttpGet(url);
+            request.setHeader("Accept", FHIR_JSON);
+            this.request = request;
+            span = tracing.start(operation, resourceType, page);
+            tracing.inject(span, request::setHeader);
+            permit = limiter.acquire(resourceType);
+            readNanos = 0;
+            resumed = System.nanoTime();
+            response = metrics.time(operation, resourceType, () -> execute(request));
+            parser = factory.createParser(response.getEntity().getContent());
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a Bundle from " + url);
+            }
+            nextUrl = null;
+            inEntries = false;
+            entries = 0;
+        }
+
+        private CloseableHttpResponse execute(HttpGet request) {
+            try {
+                CloseableHttpResponse response = httpClient.execute(request);
+                int status = response.getStatusLine().getStatusCode();
+                if (status >= 400) {
+                    try (response) {
+                        throw BaseServerResponseException.newInstance(status, EntityUtils.toString(response.getEntity()));
+                    }
+                }
+                return response;
+            } catch (IOException e) {
+                throw new FhirClientConnectionException(e);
+            }
+        }
+
+        private Patient readPatient() throws IOException {
+            while (true) {
+                if (inEntries) {
+                    if (parser.nextToken() == JsonToken.END_ARRAY) {
+                        inEntries = false;
+                        continue;
+                    }
+                    entries++;
+                    Patient patient = readEntry();
+                    if (patient != null) {
+                        return patient;
+                    }
+                    continue;
+                }
+                JsonToken token = parser.nextToken();
+                if (token == null || token == JsonToken.END_OBJECT) {
+                    closePage(null);
+                    return null;
+                }
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("entry".equals(field)) {
+                    inEntries = true;
+                } else if ("link".equals(field)) {
+                    readLinks();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        private void readLinks() throws IOException {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String relation = null;
+                String url = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    if ("relation".equals(field)) {
+                        relation = parser.getText();
+                    } else if ("url".equals(field)) {
+                        url = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if ("next".equals(relation)) {
+                    nextUrl = url;
+                }
+            }
+        }
+
+        private Patient readEntry() throws IOException {
+            Patient patient = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("resource".equals(field)) {
+                    patient = readResource();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return patient;
+        }
+
+        private Patient readResource() throws IOException {
+            StringWriter json = new StringWriter();
+            try (JsonGenerator generator = factory.createGenerator(json)) {
+                generator.writeStartObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    if ("resourceType".equals(parser.currentName())) {
+                        parser.nextToken();
+                        if (!ResourceType.Patient.name().equals(parser.getText())) {
+                            skipObject();
+                            return null;
+                        }
+                        generator.writeStringField("resourceType", parser.getText());
+                    } else {
+                        generator.copyCurrentStructure(parser);
+                    }
+                }
+                generator.writeEndObject();
+            }
+            return context.newJsonParser().parseResource(Patient.class, json.toString());
+        }
+
+        private void skipObject() throws IOException {
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                parser.skipChildren();
+            }
+        }
+
+        private void fail(Exception e) {
+            nextUrl = null;
+            if (closed && permit != null) {
+                permit.cancel();
+                permit = null;
+            }
+            closePage(e);
+        }
+
+        private void closePage(Throwable failure) {
+            if (permit != null) {
+                long latency = readNanos + System.nanoTime() - resumed;
+                if (failure == null) {
+                    permit.complete(latency);
+                } else {
+                    permit.fail(latency, failure);
+                }
+                permit = null;
+            }
+            if (span != null) {
+                tracing.end(span, failure == null ? entries : -1, -1, failure);
+                span = null;
+            }
+            try {
+                if (parser != null) {
+                    parser.close();
+                }
+                if (response != null) {
+                    response.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                parser = null;
+                response = null;
+                request = null;
+            }
+        }
+
+        /**
+         * Closes the stream when the subscriber is done with it, possibly from another thread than the one reading.
+         * A page that has not been read to the end is aborted first, so that closing it does not read the rest of the
+         * response, and a read blocked in another thread fails at once. The page is only released while no read is in
+         * progress: here if the stream is idle, otherwise by the reading thread once its read returns.
+         */
+        void close() {
+            closed = true;
+            HttpGet running = request;
+            if (running != null) {
+                running.abort();
+            }
+            release();
+        }
+
+        private void release() {
+            if (!reading.tryLock()) {
+                return;
+            }
+            try {
+                if (permit != null) {
+                    permit.cancel();
+                    permit = null;
+                }
+                closePage(null);
+            } finally {
+                reading.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import journal.Core.Model.Suggestion;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+import static journal.Core.HealthService.PATIENT_SYSTEM;
+import static journal.Core.HealthService.PRACTITIONER_SYSTEM;
+
+/**
+ * Sorted prefix index of patient and practitioner names for typeahead. Every name is stored once per word,
+ * as the suffix starting at that word, so {@code "sven"} and {@code "anna sv"} both find Anna Svensson.
+ * Lookups are a range scan over a skip list and never block. Entries come from the results of the regular
+ * searches and an optional warm-up load, and the least recently stored are evicted over {@code max-entries}.
+ */
+@ApplicationScoped
+public class SuggestIndex {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final char SEPARATOR = '\0';
+    private static final String[] SUGGEST_ELEMENTS = {"identifier", "name"};
+
+    @Inject
+    IGenericClient client;
+
+    @ConfigProperty(name = "search.suggest.max-entries", defaultValue = "100000")
+    int maxEntries;
+
+    @ConfigProperty(name = "search.suggest.warm-up-size", defaultValue = "0")
+    int warmUpSize;
+
+    private final ConcurrentNavigableMap<String, Suggestion> entries = new ConcurrentSkipListMap<>();
+    private final LinkedHashMap<String, List<String>> keysByReference = new LinkedHashMap<>();
+
+    void warmUp(@Observes StartupEvent event) {
+        if (warmUpSize <= 0) {
+            return;
+        }
+        Infrastructure.getDefaultWorkerPool().execute(() -> {
+            try {
+                HealthService.getPatients(client.search()
+                        .forResource(Patient.class)
+                        .where(Patient.IDENTIFIER.hasSystemWithAnyCode(PATIENT_SYSTEM))
+                        .sort().descending("_lastUpdated")
+                        .returnBundle(Bundle.class)
+                        .count(warmUpSize)
+                        .elementsSubset(SUGGEST_ELEMENTS)
+                        .execute()).forEach(this::put);
+                HealthService.getPractitioners(client.search()
+                        .forResource(Practitioner.class)
+                        .where(Practitioner.IDENTIFIER.hasSystemWithAnyCode(PRACTITIONER_SYSTEM))
+                        .sort().descending("_lastUpdated")
+                        .returnBundle(Bundle.class)
+                        .count(warmUpSize)
+                        .elementsSubset(SUGGEST_ELEMENTS)
+                        .execute()).forEach(this::put);
+                Log.infof("Suggest index warmed up with %d names", size());
+            } catch (RuntimeException e) {
+                Log.warnf("Suggest index warm-up failed: %s", e.getMessage());
+            }
+        });
+    }
+
+    public void put(Patient patient) {
+        put(new Suggestion(Suggestion.Type.Patient, HealthService.getSsn(patient), HealthService.getFullName(patient)));
+    }
+
+    public void put(Practitioner practitioner) {
+        String fullName = practitioner.hasName() ? practitioner.getNameFirstRep().getNameAsSingleString() : "";
+        put(new Suggestion(Suggestion.Type.Practitioner, HealthService.getHsaId(practitioner), fullName));
+    }
+
+    public void put(Suggestion suggestion) {
+        String name = normalize(suggestion.getFullName());
+        if (suggestion.getId() == null || suggestion.getId().isEmpty() || name.isEmpty() || maxEntries <= 0) {
+            return;
+        }
+        String reference = suggestion.getType() + "/" + suggestion.getId();
+        List<String> keys = new ArrayList<>();
+        for (int start = 0; start >= 0; ) {
+            keys.add(name.substring(start) + SEPARATOR + name + SEPARATOR + reference);
+            int space = name.indexOf(' ', start);
+            start = space < 0 ? -1 : space + 1;
+        }
+        synchronized (keysByReference) {
+            List<String> previous = keysByReference.remove(reference);
+            if (previous != null) {
+                previous.forEach(entries::remove);
+            }
+            keys.forEach(key -> entries.put(key, suggestion));
+            keysByReference.put(reference, keys);
+            Iterator<List<String>> oldest = keysByReference.values().iterator();
+            while (keysByReference.size() > maxEntries) {
+                oldest.next().forEach(entries::remove);
+                oldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns at most {@code limit} suggestions of the given types whose name has a word starting with the
+     * query, ordered by the matched word and then by full name.
+     */
+    public List<Suggestion> suggest(String query, Set<Suggestion.Type> types, int limit) {
+        String prefix = normalize(query);
+        if (prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Map<String, Suggestion> suggestions = new LinkedHashMap<>();
+        for (Map.Entry<String, Suggestion> entry : entries.subMap(prefix, prefix + Character.MAX_VALUE).entrySet()) {
+            Suggestion suggestion = entry.getValue();
+            if (types.contains(suggestion.getType())) {
+                suggestions.putIfAbsent(suggestion.getType() + "/" + suggestion.getId(), suggestion);
+                if (suggestions.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return List.copyOf(suggestions.values());
+    }
+
+    int size() {
+        synchronized (keysByReference) {
+            return keysByReference.size();
+        }
+    }
+
+    static String normalize(String text) {
+        return WHITESPACE.matcher(PatientIndex.normalize(text)).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,85 @@
+package journal.Core;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.smallrye.mutiny.Multi;
+import jakarta.inject.Inject;
+import journal.Core.Model.CompactJsonList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class AdminControllerTest {
+    private static final String CONDITION_KEY = SearchResultCache.key("patients-by-condition", "123");
+    private static final String NAME_KEY = SearchResultCache.key("patients-by-name", "john");
+
+    @Inject
+    SearchResultCache resultCache;
+
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        resultCache.invalidateAll();
+        search(CONDITION_KEY);
+        search(NAME_KEY);
+        searches.set(0);
+    }
+
+    @Test
+    @TestSecurity(user = "admin", roles = "admin")
+    void testAdminInvalidatesOneEndpointByPrefix() {
+        given().queryParam("endpoint", "patients-by-condition")
+                .when().delete("/admin/search-cache")
+                .then().statusCode(204);
+
+        search(CONDITION_KEY);
+        assertEquals(1, searches.get(), "Searches of the invalidated endpoint should fetch again");
+        search(NAME_KEY);
+        assertEquals(1, searches.get(), "Searches of other endpoints should stay cached");
+    }
+
+    @Test
+    @TestSecurity(user = "admin", roles = "admin")
+    void testAdminInvalidatesEveryEndpoint() {
+        given().when().delete("/admin/search-cache")
+                .then().statusCode(204);
+
+        search(CONDITION_KEY);
+        search(NAME_KEY);
+        assertEquals(2, searches.get(), "Every search should fetch again");
+    }
+
+    @Test
+    @TestSecurity(user = "doctor")
+    void testNonAdminIsForbidden() {
+        given().when().delete("/admin/search-cache")
+                .then().statusCode(403);
+
+        search(CONDITION_KEY);
+        assertEquals(0, searches.get(), "Cache should be left untouched");
+    }
+
+    @Test
+    void testAnonymousIsUnauthorized() {
+        given().when().delete("/admin/search-cache")
+                .then().statusCode(401);
+
+        search(CONDITION_KEY);
+        assertEquals(0, searches.get(), "Cache should be left untouched");
+    }
+
+    private void search(String key) {
+        resultCache.stream(key, SearchResultCache::weigh, CompactJsonList::of, () -> Multi.createFrom().deferred(() -> {
+                    searches.incrementAndGet();
+                    return Multi.createFrom().items("{\"id\":\"19900101-0000\",\"fullName\":\"John Doe\"}");
+                }))
+                .collect().asList()
+                .await().indefinitely();
+    }
+}
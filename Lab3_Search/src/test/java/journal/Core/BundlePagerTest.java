@@ -0,0 +1,135 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.apache.ApacheHttpRequest;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import ca.uhn.fhir.rest.gclient.IGetPage;
+import ca.uhn.fhir.rest.gclient.IGetPageTyped;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@QuarkusTest
+public class BundlePagerTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFetchesNoFurtherPagesAfterCancel() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fetched = new AtomicInteger();
+
+        IGenericClient mockClient = mock(IGenericClient.class);
+        IGetPage mockGetPage = mock(IGetPage.class);
+        IGetPageTyped<Bundle> mockNext = mock(IGetPageTyped.class);
+        when(mockClient.loadPage()).thenReturn(mockGetPage);
+        when(mockGetPage.next(any(Bundle.class))).thenReturn(mockNext);
+        when(mockNext.execute()).thenAnswer(invocation -> {
+            int page = fetched.incrementAndGet();
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return createPage(page);
+        });
+
+        AssertSubscriber<Bundle> subscriber = new BundlePager(mockClient, 3, executor)
+                .pages(createPage(0))
+                .subscribe().withSubscriber(AssertSubscriber.create(1));
+        subscriber.awaitItems(1);
+        assertTrue(loading.await(5, TimeUnit.SECONDS), "Second page should be prefetched");
+
+        subscriber.cancel();
+        release.countDown();
+        Thread.sleep(200);
+
+        assertEquals(1, fetched.get(), "Prefetched pages should not be fetched after cancel");
+    }
+
+    @Test
+    void testAbortsPageBeingLoadedOnCancel() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch aborted = new CountDownLatch(1);
+        HttpGet request = new HttpGet("http://localhost/fhir?_getpages=1");
+        request.setCancellable(() -> {
+            aborted.countDown();
+            return true;
+        });
+        HapiLimiter limiter = new HapiLimiter(new SimpleMeterRegistry(), true, 2, 1, 4, 0.5, Duration.ofSeconds(5));
+
+        IGenericClient mockClient = mock(IGenericClient.class);
+        IGetPage mockGetPage = mock(IGetPage.class);
+        IGetPageTyped<Bundle> mockNext = mock(IGetPageTyped.class);
+        when(mockClient.loadPage()).thenReturn(mockGetPage);
+        when(mockGetPage.next(any(Bundle.class))).thenReturn(mockNext);
+        when(mockNext.execute()).thenAnswer(invocation -> {
+            AbortableCall.INTERCEPTOR.interceptRequest(new ApacheHttpRequest(mock(HttpClient.class), request));
+            loading.countDown();
+            aborted.await(5, TimeUnit.SECONDS);
+            throw new FhirClientConnectionException("Request aborted");
+        });
+
+        AssertSubscriber<Bundle> subscriber = new BundlePager(mockClient, 1, executor, SearchMetrics.NONE, SearchTracing.NONE, limiter, ResourceType.Patient)
+                .pages(createPage(0))
+                .subscribe().withSubscriber(AssertSubscriber.create(1));
+        subscriber.awaitItems(1);
+        assertTrue(loading.await(5, TimeUnit.SECONDS), "Second page should be prefetched");
+
+        subscriber.cancel();
+
+        assertTrue(aborted.await(5, TimeUnit.SECONDS), "Page being loaded should be aborted on cancel");
+        Thread.sleep(200);
+        assertEquals(0, limiter.inFlight(ResourceType.Patient), "Aborted page should release its permit");
+        assertEquals(2, limiter.limit(ResourceType.Patient), "Aborted page should not change the limit");
+    }
+
+    @Test
+    void testFetchesPagesOnDemandOnly() throws Exception {
+        AtomicInteger fetched = new AtomicInteger();
+
+        IGenericClient mockClient = mock(IGenericClient.class);
+        IGetPage mockGetPage = mock(IGetPage.class);
+        IGetPageTyped<Bundle> mockNext = mock(IGetPageTyped.class);
+        when(mockClient.loadPage()).thenReturn(mockGetPage);
+        when(mockGetPage.next(any(Bundle.class))).thenReturn(mockNext);
+        when(mockNext.execute()).thenAnswer(invocation -> createPage(fetched.incrementAndGet()));
+
+        AssertSubscriber<Bundle> subscriber = new BundlePager(mockClient, 1, executor)
+                .pages(createPage(0))
+                .subscribe().withSubscriber(AssertSubscriber.create(2));
+        subscriber.awaitItems(2);
+        Thread.sleep(200);
+
+        assertEquals(2, fetched.get(), "Only the requested page and one prefetched page should be fetched");
+        subscriber.cancel();
+    }
+
+    private static Bundle createPage(int index) {
+        Bundle page = new Bundle();
+        page.addEntry().setResource(new Patient().setId("p" + index));
+        page.addLink().setRelation(Bundle.LINK_NEXT).setUrl("page-" + (index + 1));
+        return page;
+    }
+}
@@ -0,0 +1,217 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import journal.Core.Model.Suggestion;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.jboss.resteasy.reactive.server.jaxrs.SseImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@QuarkusTest
+public class ControllerTest {
+    private static final String PATIENT_SYSTEM = "http://electronichealth.se/identifier/personnummer";
+
+    private Controller controller;
+    private HealthService healthService;
+
+    @BeforeEach
+    void setUp() {
+        SearchExecutor searchExecutor = mock(SearchExecutor.class);
+        when(searchExecutor.getExecutionMode()).thenReturn(ExecutionMode.Worker);
+        when(searchExecutor.getExecutor()).thenReturn(Runnable::run);
+
+        healthService = mock(HealthService.class);
+        when(healthService.getPatientsByConditionCodes(eq(List.of("123")), any())).thenReturn(Multi.createFrom().items(
+                createMockPatient("1111"), createMockPatient("2222"), createMockPatient("3333")));
+
+        controller = new Controller();
+        controller.healthService = healthService;
+        controller.searchExecutor = searchExecutor;
+        controller.metrics = SearchMetrics.NONE;
+        controller.coalescer = new SearchCoalescer();
+        controller.coalescer.enabled = true;
+        controller.coalescer.bufferSize = 256;
+        controller.resultCache = new SearchResultCache(new SimpleMeterRegistry(), false, new MemorySize(BigInteger.ZERO), new MemorySize(BigInteger.ZERO), Duration.ZERO);
+        controller.eventWriter = new SearchEventWriter(new ObjectMapper());
+        controller.sse = new SseImpl();
+        controller.maxBatchSize = 1000;
+        controller.defaultBatchWindow = Duration.ofMillis(250);
+        controller.maxPendingBatches = 16;
+        controller.suggestIndex = new SuggestIndex();
+        controller.suggestIndex.maxEntries = 1000;
+        controller.defaultSuggestLimit = 10;
+        controller.maxSuggestLimit = 50;
+        controller.suggestMinLength = 2;
+        controller.suggestDebounce = Duration.ofMillis(10);
+        controller.recordSuggestions = true;
+    }
+
+    @Test
+    void testGetPatientsByConditionEmitsOneEventPerPatientByDefault() {
+        List<String> events = controller.getPatientsByCondition(List.of("123"), null, 1, null)
+                .onItem().transform(event -> (String) event.getData())
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(3, events.size(), "Every patient should be a separate event");
+        assertTrue(events.get(0).startsWith("{\"id\":\"1111\""), "Event should be a patient object");
+    }
+
+    @Test
+    void testGetPatientsByConditionGroupsPatientsIntoBatches() {
+        List<String> events = controller.getPatientsByCondition(List.of("123"), null, 2, 10_000L)
+                .onItem().transform(event -> (String) event.getData())
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(2, events.size(), "Patients should be grouped by batch size");
+        assertTrue(events.get(0).startsWith("[{\"id\":\"1111\""), "Batch should be a JSON array");
+        assertTrue(events.get(0).contains("},{\"id\":\"2222\""), "Batch should contain the full batch size");
+        assertTrue(events.get(1).startsWith("[{\"id\":\"3333\"") && events.get(1).endsWith("}]"),
+                "Remaining patients should be flushed on completion");
+    }
+
+    @Test
+    void testGetPatientsByConditionBatchesWaitForDelayedRequests() throws InterruptedException {
+        when(healthService.getPatientsByConditionCodes(eq(List.of("456")), any())).thenReturn(Multi.createFrom().range(0, 20)
+                .onItem().call(i -> Uni.createFrom().voidItem().onItem().delayIt().by(Duration.ofMillis(30)))
+                .onItem().transform(i -> createMockPatient("p" + i)));
+
+        AssertSubscriber<OutboundSseEvent> subscriber = controller.getPatientsByCondition(List.of("456"), null, 2, 10L)
+                .subscribe().withSubscriber(AssertSubscriber.create(1));
+        for (int request = 0; request < 100 && !subscriber.hasCompleted(); request++) {
+            Thread.sleep(50);
+            subscriber.request(1);
+        }
+
+        subscriber.awaitCompletion();
+        List<OutboundSseEvent> events = subscriber.getItems();
+        assertTrue(events.stream().noneMatch(event -> "error".equals(event.getName())), "Slow reader should not get an error event");
+        assertEquals(20, events.stream().mapToLong(event -> ((String) event.getData()).split("\\{").length - 1).sum(),
+                "Every patient should be delivered once the reader catches up");
+    }
+
+    @Test
+    void testGetPatientsByConditionEndsWithErrorEventWhenRejected() {
+        when(healthService.getPatientsByConditionCodes(eq(List.of("456")), any())).thenReturn(Multi.createFrom().failure(
+                new SearchRejectedException(ResourceType.Condition, 20)));
+
+        List<OutboundSseEvent> events = controller.getPatientsByCondition(List.of("456"), null, 1, null)
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(1, events.size(), "Rejection should be reported as a single event");
+        assertEquals("error", events.get(0).getName(), "Rejection should be sent as an error event");
+        assertTrue(((String) events.get(0).getData()).startsWith("{\"error\":\"overloaded\""), "Error event should describe the rejection");
+    }
+
+    @Test
+    void testGetPatientsByConditionWritesOnlyRequestedFields() {
+        List<String> events = controller.getPatientsByCondition(List.of("123"), "fullName, id", 1, null)
+                .onItem().transform(event -> (String) event.getData())
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals("{\"id\":\"1111\",\"fullName\":\"John Doe\"}", events.get(0), "Only the requested fields should be written");
+        verify(healthService).getPatientsByConditionCodes(eq(List.of("123")),
+                argThat(fields -> List.of("identifier", "name").equals(List.of(fields.elements()))));
+    }
+
+    @Test
+    void testGetPatientsByConditionRejectsUnknownFields() {
+        assertThrows(BadRequestException.class, () -> controller.getPatientsByCondition(List.of("123"), "id,role", 1, null),
+                "Fields that patients do not have should be rejected");
+    }
+
+    @Test
+    void testSuggestAnswersFromIndexWithoutSearching() {
+        controller.suggestIndex.put(new Suggestion(Suggestion.Type.Patient, "1111", "John Doe"));
+
+        List<Suggestion> suggestions = controller.suggest("jo", List.of("patient"), 1)
+                .await().indefinitely();
+
+        assertEquals("1111", suggestions.get(0).getId(), "Suggestion should come from the index");
+        verify(healthService, never()).getPatientsByName(any(), any());
+    }
+
+    @Test
+    void testSuggestFallsBackToSearchAndRecordsResults() {
+        when(healthService.getPatientsByName(eq("jo"), any())).thenReturn(Multi.createFrom().items(
+                createMockPatient("1111"), createMockPatient("2222")));
+
+        List<Suggestion> suggestions = controller.suggest("jo", List.of("patient"), 10)
+                .await().indefinitely();
+
+        assertEquals(2, suggestions.size(), "Searched patients should be suggested");
+        assertEquals("John Doe", suggestions.get(0).getFullName(), "Suggestion should carry the full name");
+        verify(healthService).getPatientsByName(eq("jo"), argThat(fields -> !fields.has(Projection.Field.Gender)));
+        assertEquals(2, controller.suggest("doe", List.of("patient"), 2).await().indefinitely().size(),
+                "Searched patients should be kept in the index");
+    }
+
+    @Test
+    void testSuggestAnswersFromIndexWhenSearchFails() {
+        controller.suggestIndex.put(new Suggestion(Suggestion.Type.Patient, "1111", "John Doe"));
+        when(healthService.getPatientsByName(eq("jo"), any())).thenReturn(Multi.createFrom().failure(
+                new FhirClientConnectionException("Connection refused")));
+
+        List<Suggestion> suggestions = controller.suggest("jo", List.of("patient"), 10)
+                .await().indefinitely();
+
+        assertEquals(1, suggestions.size(), "Failed search should fall back to the index");
+        assertEquals("1111", suggestions.get(0).getId(), "Suggestion should come from the index");
+    }
+
+    @Test
+    void testSuggestCancelledDuringDebounceNeverSearches() throws InterruptedException {
+        controller.suggestDebounce = Duration.ofMillis(50);
+
+        controller.suggest("jo", List.of("patient"), 10)
+                .subscribe().with(suggestions -> fail("Cancelled suggestion should not complete"))
+                .cancel();
+        Thread.sleep(150);
+
+        verify(healthService, never()).getPatientsByName(any(), any());
+    }
+
+    @Test
+    void testGetPatientsByConditionRecordsSuggestions() {
+        controller.getPatientsByCondition(List.of("123"), null, 1, null)
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(3, controller.suggestIndex.suggest("john", EnumSet.of(Suggestion.Type.Patient), 10).size(),
+                "Searched patients should be recorded for suggestions");
+    }
+
+    private Patient createMockPatient(String identifierValue) {
+        Patient mockPatient = new Patient();
+        mockPatient.addIdentifier().setSystem(PATIENT_SYSTEM).setValue(identifierValue);
+        mockPatient.addName().setFamily("Doe").addGiven("John");
+        return mockPatient;
+    }
+}
@@ -0,0 +1,158 @@
+package journal.Core;
+
+import com.github.luben.zstd.ZstdInputStream;
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.RestAssured;
+import io.restassured.config.DecoderConfig;
+import io.smallrye.mutiny.Multi;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@QuarkusTest
+@TestSecurity(user = "doctor")
+public class ExportEndpointTest {
+    private static final String PATIENT_SYSTEM = "http://electronichealth.se/identifier/personnummer";
+
+    @InjectMock
+    HealthService healthService;
+
+    @InjectMock
+    SearchExecutor searchExecutor;
+
+    @BeforeEach
+    void setUp() {
+        when(searchExecutor.getExecutionMode()).thenReturn(ExecutionMode.Worker);
+        when(searchExecutor.getExecutor()).thenReturn(Runnable::run);
+        when(healthService.getPatientsByConditionCodes(eq(List.of("123")), any())).thenReturn(Multi.createFrom().items(
+                createMockPatient("1111"), createMockPatient("2222")));
+        when(healthService.getPatientData(any(), any())).thenCallRealMethod();
+    }
+
+    @Test
+    void testExportPatientsByConditionWritesOnePatientPerLine() {
+        String body = given().queryParam("condition", "123")
+                .when().get("/export/patients-by-condition")
+                .then().statusCode(200)
+                .contentType("application/x-ndjson")
+                .extract().asString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length, "Every patient should be written on its own line");
+        assertTrue(lines[0].startsWith("{\"id\":\"1111\"") && lines[0].endsWith("}"), "Line should be a patient object");
+        assertTrue(lines[1].startsWith("{\"id\":\"2222\""), "Patients should keep search order");
+    }
+
+    @Test
+    void testExportPatientsByConditionIsGzippedWhenAccepted() throws IOException {
+        byte[] body = given().queryParam("condition", "123")
+                .header("Accept-Encoding", "gzip")
+                .config(RestAssured.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .when().get("/export/patients-by-condition")
+                .then().statusCode(200)
+                .header("Content-Encoding", "gzip")
+                .extract().asByteArray();
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            String lines = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(lines.startsWith("{\"id\":\"1111\""), "Decompressed export should contain the patients");
+        }
+    }
+
+    @Test
+    void testExportPatientsByConditionIsZstdCompressedWhenAccepted() throws IOException {
+        byte[] body = given().queryParam("condition", "123")
+                .header("Accept-Encoding", "zstd")
+                .config(RestAssured.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .when().get("/export/patients-by-condition")
+                .then().statusCode(200)
+                .header("Content-Encoding", "zstd")
+                .extract().asByteArray();
+
+        try (ZstdInputStream zstd = new ZstdInputStream(new ByteArrayInputStream(body))) {
+            String lines = new String(zstd.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(lines.startsWith("{\"id\":\"1111\""), "Decompressed export should contain the patients");
+        }
+    }
+
+    @Test
+    void testExportPatientsByConditionWritesRequestedFields() {
+        String body = given().queryParam("condition", "123").queryParam("fields", "id,fullName")
+                .when().get("/export/patients-by-condition")
+                .then().statusCode(200)
+                .extract().asString();
+
+        assertEquals("{\"id\":\"1111\",\"fullName\":\"John Doe\"}", body.split("\n")[0], "Only the requested fields should be exported");
+    }
+
+    @Test
+    void testCachedExportIsServedFromTheColumnarStore() {
+        when(healthService.getPatientsByConditionCodes(eq(List.of("789")), any())).thenReturn(Multi.createFrom().items(
+                createMockPatient("3333")));
+
+        String first = given().queryParam("condition", "789")
+                .when().get("/export/patients-by-condition")
+                .then().statusCode(200)
+                .extract().asString();
+        String second = given().queryParam("condition", "789")
+                .when().get("/export/patients-by-condition")
+                .then().statusCode(200)
+                .extract().asString();
+
+        assertTrue(first.startsWith("{\"id\":\"3333\",\"fullName\":\"John Doe\""), "Patient should be exported");
+        assertEquals(first, second, "Cached export should be identical");
+        verify(healthService, times(1)).getPatientsByConditionCodes(eq(List.of("789")), any());
+    }
+
+    @Test
+    void testExportRejectsUnknownFields() {
+        given().queryParam("condition", "123").queryParam("fields", "id,shoeSize")
+                .when().get("/export/patients-by-condition")
+                .then().statusCode(400);
+    }
+
+    @Test
+    void testExportRejectsMissingConditionCodes() {
+        given().when().get("/export/patients-by-condition")
+                .then().statusCode(400);
+        given().queryParam("condition", " , ")
+                .when().get("/export/patients-by-condition")
+                .then().statusCode(400);
+    }
+
+    @Test
+    void testExportIsUnavailableWhenRejected() {
+        when(healthService.getPatientsByConditionCodes(eq(List.of("456")), any())).thenReturn(Multi.createFrom().failure(
+                new SearchRejectedException(ResourceType.Condition, 20)));
+
+        given().queryParam("condition", "456")
+                .when().get("/export/patients-by-condition")
+                .then().statusCode(503)
+                .header("Retry-After", "1");
+    }
+
+    private Patient createMockPatient(String identifierValue) {
+        Patient mockPatient = new Patient();
+        mockPatient.setId(identifierValue);
+        mockPatient.addIdentifier().setSystem(PATIENT_SYSTEM).setValue(identifierValue);
+        mockPatient.addName().setFamily("Doe").addGiven("John");
+        return mockPatient;
+    }
+}
@@ -0,0 +1,68 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class HapiLimiterTest {
+    private SimpleMeterRegistry registry;
+    private HapiLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        limiter = new HapiLimiter(registry, true, 2, 1, 4, 0.5, Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testRejectsRequestsOverTheLimitPerResourceType() {
+        limiter.call(ResourceType.Condition, () -> limiter.call(ResourceType.Condition, () -> {
+            assertThrows(SearchRejectedException.class, () -> limiter.call(ResourceType.Condition, () -> "third"),
+                    "Third concurrent request should be rejected");
+            assertEquals("patient", limiter.call(ResourceType.Patient, () -> "patient"),
+                    "Other resource types should have their own bulkhead");
+            return "second";
+        }));
+
+        assertEquals(0, limiter.inFlight(ResourceType.Condition), "Finished requests should leave the bulkhead");
+        assertEquals(1.0, registry.get("hapi.client.rejected").tag("resource", "Condition").counter().count(),
+                "Rejections should be counted");
+    }
+
+    @Test
+    void testLimitGrowsOnSuccessAndShrinksOnOverload() {
+        limiter.call(ResourceType.Patient, () -> limiter.call(ResourceType.Patient, () -> "ok"));
+        assertEquals(3, limiter.limit(ResourceType.Patient), "Limit should grow while requests succeed under load");
+
+        assertThrows(InternalErrorException.class, () -> limiter.call(ResourceType.Patient, () -> {
+            throw new InternalErrorException("HAPI is overloaded");
+        }));
+        assertEquals(1, limiter.limit(ResourceType.Patient), "Limit should back off on server errors");
+
+        assertThrows(ResourceNotFoundException.class, () -> limiter.call(ResourceType.Patient, () -> {
+            throw new ResourceNotFoundException("Missing");
+        }));
+        assertEquals(1, limiter.limit(ResourceType.Patient), "Client errors should not change the limit");
+        assertEquals(1.5, registry.get("hapi.client.limit").tag("resource", "Patient").gauge().value(),
+                "Limit should be exported as a gauge");
+    }
+
+    @Test
+    void testReleasesReactiveRequestsOnCancellation() {
+        limiter.call(ResourceType.Practitioner, Uni.createFrom().nothing())
+                .subscribe().with(item -> { })
+                .cancel();
+
+        assertEquals(0, limiter.inFlight(ResourceType.Practitioner), "Cancelled requests should leave the bulkhead");
+    }
+}
@@ -3,12 +3,14 @@ package journal.Core;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import ca.uhn.fhir.rest.gclient.*;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import io.quarkus.test.junit.QuarkusTest;
 import journal.Core.Model.PatientData;
 import journal.Core.Model.PractitionerData;
 import org.hl7.fhir.r4.model.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -20,6 +22,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -77,6 +80,8 @@ public class HealthServiceTest {
         when(mockWhere2.sort()).thenReturn(mockSort);
         when(mockSort.ascending(any(IParam.class))).thenReturn(mockAscending);
         when(mockAscending.returnBundle(Bundle.class)).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.count(anyInt())).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.elementsSubset(any(String[].class))).thenReturn(mockReturnBundle);
         when(mockReturnBundle.execute()).thenReturn(mockBundle);
 
         List<Patient> patients = new ArrayList<>();
@@ -131,6 +136,8 @@ public class HealthServiceTest {
         when(mockWhere3.sort()).thenReturn(mockSort);
         when(mockSort.ascending(any(IParam.class))).thenReturn(mockAscending);
         when(mockAscending.returnBundle(Bundle.class)).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.count(anyInt())).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.elementsSubset(any(String[].class))).thenReturn(mockReturnBundle);
         when(mockReturnBundle.execute()).thenReturn(mockBundle);
 
         Field clientField = HealthService.class.getDeclaredField("client");
@@ -182,10 +189,12 @@ public class HealthServiceTest {
         when(mockQueryForResource.where(any(ICriterion.class))).thenReturn(mockWhere);
         when(mockWhere.include(any())).thenReturn(mockInclude);
         when(mockInclude.returnBundle(Bundle.class)).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.count(anyInt())).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.elementsSubset(any(String[].class))).thenReturn(mockReturnBundle);
         when(mockReturnBundle.execute()).thenReturn(mockBundle);
 
         List<Patient> patients = new ArrayList<>();
-        healthService.getPatientsByConditionCode(code)
+        healthService.getPatientsByConditionCodes(List.of(code))
                 .subscribe()
                 .with(patients::add);
 
@@ -234,6 +243,8 @@ public class HealthServiceTest {
         when(mockWhere1.where(any(ICriterion.class))).thenReturn(mockWhere2);
         when(mockWhere2.include(any())).thenReturn(mockInclude);
         when(mockInclude.returnBundle(Bundle.class)).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.count(anyInt())).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.elementsSubset(any(String[].class))).thenReturn(mockReturnBundle);
         when(mockReturnBundle.execute()).thenReturn(mockBundle);
 
         Field clientField = HealthService.class.getDeclaredField("client");
@@ -241,7 +252,7 @@ public class HealthServiceTest {
         clientField.set(healthService, mockClient);
 
         List<Patient> patients = new ArrayList<>();
-        healthService.getPatientsByConditionCodeAndPractitionerIdentifier(code, practitionerIdentifier)
+        healthService.getPatientsByConditionCodesAndPractitionerIdentifier(List.of(code), practitionerIdentifier)
                 .subscribe()
                 .with(patients::add);
 
@@ -251,6 +262,210 @@ public class HealthServiceTest {
         assertEquals("John", patients.get(0).getNameFirstRep().getGivenAsSingleString(), "Patient given name should match");
     }
 
+    @Test
+    void testGetPatientsByConditionCodeRequestsPageSizeAndElements() {
+        healthService.pageSize = 25;
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockQueryForResource = mock(IQuery.class, RETURNS_SELF);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Condition.class)).thenReturn(mockQueryForResource);
+        doReturn(mockQueryForResource).when(mockQueryForResource).returnBundle(Bundle.class);
+        when(mockQueryForResource.execute()).thenReturn(new Bundle());
+
+        healthService.getPatientsByConditionCodes(List.of("112233"))
+                .collect().asList()
+                .await().indefinitely();
+
+        verify(mockQueryForResource).count(25);
+        verify(mockQueryForResource).elementsSubset("identifier", "name", "gender", "telecom", "address");
+    }
+
+    @Test
+    void testGetPatientsByConditionCodeFollowsNextPages() {
+        String code = "112233";
+        healthService.prefetchPages = 2;
+
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        firstPage.addLink().setRelation(Bundle.LINK_NEXT).setUrl("page-2");
+        Bundle secondPage = new Bundle();
+        secondPage.addEntry().setResource(createMockPatient("2222", "Jane Doe"));
+        secondPage.addLink().setRelation(Bundle.LINK_NEXT).setUrl("page-3");
+        Bundle thirdPage = new Bundle();
+        thirdPage.addEntry().setResource(createMockPatient("3333", "Jim Doe"));
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockQueryForResource = mock(IQuery.class, RETURNS_SELF);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Condition.class)).thenReturn(mockQueryForResource);
+        doReturn(mockQueryForResource).when(mockQueryForResource).returnBundle(Bundle.class);
+        when(mockQueryForResource.execute()).thenReturn(firstPage);
+
+        IGetPage mockGetPage = mock(IGetPage.class);
+        IGetPageTyped<Bundle> mockNextOfSecond = mock(IGetPageTyped.class);
+        IGetPageTyped<Bundle> mockNextOfFirst = mock(IGetPageTyped.class);
+        when(mockClient.loadPage()).thenReturn(mockGetPage);
+        when(mockGetPage.next(firstPage)).thenReturn(mockNextOfFirst);
+        when(mockGetPage.next(secondPage)).thenReturn(mockNextOfSecond);
+        when(mockNextOfFirst.execute()).thenReturn(secondPage);
+        when(mockNextOfSecond.execute()).thenReturn(thirdPage);
+
+        List<Patient> patients = healthService.getPatientsByConditionCodes(List.of(code))
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(3, patients.size(), "Patients from every page should be emitted");
+        assertEquals("1111", patients.get(0).getIdentifierFirstRep().getValue(), "First page should be emitted first");
+        assertEquals("2222", patients.get(1).getIdentifierFirstRep().getValue(), "Second page should follow the first");
+        assertEquals("3333", patients.get(2).getIdentifierFirstRep().getValue(), "Third page should be emitted last");
+        verify(mockGetPage, times(2)).next(any(Bundle.class));
+    }
+
+    @Test
+    void testGetPatientsByConditionCodeEmitsEachPatientOnce() {
+        Patient mockPatient = createMockPatient("1111", "John Doe");
+        mockPatient.setId("Patient/p1");
+        Patient otherMockPatient = createMockPatient("2222", "Jane Doe");
+        otherMockPatient.setId("Patient/p2");
+
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(mockPatient);
+        firstPage.addEntry().setResource(mockPatient);
+        firstPage.addLink().setRelation(Bundle.LINK_NEXT).setUrl("page-2");
+        Bundle secondPage = new Bundle();
+        secondPage.addEntry().setResource(otherMockPatient);
+        secondPage.addEntry().setResource(mockPatient);
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockQueryForResource = mock(IQuery.class, RETURNS_SELF);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Condition.class)).thenReturn(mockQueryForResource);
+        doReturn(mockQueryForResource).when(mockQueryForResource).returnBundle(Bundle.class);
+        when(mockQueryForResource.execute()).thenReturn(firstPage);
+
+        IGetPage mockGetPage = mock(IGetPage.class);
+        IGetPageTyped<Bundle> mockNextOfFirst = mock(IGetPageTyped.class);
+        when(mockClient.loadPage()).thenReturn(mockGetPage);
+        when(mockGetPage.next(firstPage)).thenReturn(mockNextOfFirst);
+        when(mockNextOfFirst.execute()).thenReturn(secondPage);
+
+        List<Patient> patients = healthService.getPatientsByConditionCodes(List.of("112233"))
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(2, patients.size(), "Each patient should be emitted once");
+        assertEquals("1111", patients.get(0).getIdentifierFirstRep().getValue(), "First patient should be emitted first");
+        assertEquals("2222", patients.get(1).getIdentifierFirstRep().getValue(), "Second patient should follow the first");
+    }
+
+    @Test
+    void testGetPatientsByConditionCodesMergesSearchesAndEmitsEachPatientOnce() {
+        healthService.codesPerQuery = 1;
+        healthService.conditionParallelism = 2;
+
+        Patient mockPatient = createMockPatient("1111", "John Doe");
+        mockPatient.setId("Patient/p1");
+        Patient otherMockPatient = createMockPatient("2222", "Jane Doe");
+        otherMockPatient.setId("Patient/p2");
+
+        Bundle firstBundle = new Bundle();
+        firstBundle.addEntry().setResource(mockPatient);
+        Bundle secondBundle = new Bundle();
+        secondBundle.addEntry().setResource(mockPatient);
+        secondBundle.addEntry().setResource(otherMockPatient);
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockQueryForResource = mock(IQuery.class, RETURNS_SELF);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Condition.class)).thenReturn(mockQueryForResource);
+        doReturn(mockQueryForResource).when(mockQueryForResource).returnBundle(Bundle.class);
+        when(mockQueryForResource.execute()).thenReturn(firstBundle, secondBundle);
+
+        List<Patient> patients = healthService.getPatientsByConditionCodes(List.of("112233", "445566"))
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(2, patients.size(), "Patients matching several codes should be emitted once");
+        verify(mockQueryForResource, times(2)).execute();
+    }
+
+    @Test
+    void testGetPatientsByConditionCodesAndPractitionerIdentifierUsesChainedSearch() {
+        healthService.chainedSearch = true;
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockQueryForResource = mock(IQuery.class, RETURNS_SELF);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Condition.class)).thenReturn(mockQueryForResource);
+        doReturn(mockQueryForResource).when(mockQueryForResource).returnBundle(Bundle.class);
+        when(mockQueryForResource.execute()).thenReturn(new Bundle());
+
+        healthService.getPatientsByConditionCodesAndPractitionerIdentifier(List.of("112233"), "12345")
+                .collect().asList()
+                .await().indefinitely();
+
+        ArgumentCaptor<ICriterion> criteria = ArgumentCaptor.forClass(ICriterion.class);
+        verify(mockQueryForResource, times(2)).where(criteria.capture());
+        ICriterionInternal practitionerCriterion = (ICriterionInternal) criteria.getAllValues().get(1);
+        assertEquals("subject:Patient.general-practitioner:Practitioner.identifier", practitionerCriterion.getParameterName(),
+                "Practitioner should be matched with a chained identifier");
+        assertEquals(PRACTITIONER_SYSTEM + "|12345", practitionerCriterion.getParameterValue(FhirContext.forR4()),
+                "Chained identifier should include the practitioner system");
+        verify(mockQuery, never()).forResource(Practitioner.class);
+    }
+
+    @Test
+    void testGetPatientsByNameAndPractitionerIdentifierFallsBackWhenChainIsRejected() {
+        healthService.chainedSearch = true;
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockPatientQuery = mock(IQuery.class, RETURNS_SELF);
+        IQuery<Bundle> mockPractitionerQuery = mock(IQuery.class, RETURNS_SELF);
+        ISort<Bundle> mockSort = mock(ISort.class);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Patient.class)).thenReturn(mockPatientQuery);
+        when(mockQuery.forResource(Practitioner.class)).thenReturn(mockPractitionerQuery);
+        when(mockPatientQuery.sort()).thenReturn(mockSort);
+        when(mockSort.ascending(any(IParam.class))).thenReturn(mockPatientQuery);
+        doReturn(mockPatientQuery).when(mockPatientQuery).returnBundle(Bundle.class);
+        doReturn(mockPractitionerQuery).when(mockPractitionerQuery).returnBundle(Bundle.class);
+        when(mockPatientQuery.execute()).thenThrow(new InvalidRequestException(
+                "HTTP 400 Bad Request: Unknown search parameter \"general-practitioner:Practitioner.identifier\" for resource type \"Patient\""));
+        when(mockPractitionerQuery.execute()).thenReturn(new Bundle());
+
+        List<Patient> patients = healthService.getPatientsByNameAndPractitionerIdentifier("John", "12345")
+                .collect().asList()
+                .await().indefinitely();
+
+        assertTrue(patients.isEmpty(), "Unknown practitioner should have no patients");
+        assertFalse(healthService.chainedSearch, "Rejected chain should not be tried again");
+        verify(mockPractitionerQuery).execute();
+    }
+
+    @Test
+    void testGetPatientsByNameAndPractitionerIdentifierPassesOnOtherBadRequests() {
+        healthService.chainedSearch = true;
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockPatientQuery = mock(IQuery.class, RETURNS_SELF);
+        ISort<Bundle> mockSort = mock(ISort.class);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Patient.class)).thenReturn(mockPatientQuery);
+        when(mockPatientQuery.sort()).thenReturn(mockSort);
+        when(mockSort.ascending(any(IParam.class))).thenReturn(mockPatientQuery);
+        doReturn(mockPatientQuery).when(mockPatientQuery).returnBundle(Bundle.class);
+        OperationOutcome outcome = new OperationOutcome();
+        outcome.addIssue().setDiagnostics("Invalid _count value: 0");
+        when(mockPatientQuery.execute()).thenThrow(new InvalidRequestException("HTTP 400 Bad Request", outcome));
+
+        assertThrows(InvalidRequestException.class, () -> healthService.getPatientsByNameAndPractitionerIdentifier("John", "12345")
+                .collect().asList()
+                .await().indefinitely(), "Bad request not caused by the chain should be passed on");
+        assertTrue(healthService.chainedSearch, "Bad request not caused by the chain should leave chained search enabled");
+        verify(mockQuery, never()).forResource(Practitioner.class);
+    }
+
     @Test
     void testGetPractitionerByIdentifier() {
         String identifierValue = "12345";
@@ -271,6 +486,7 @@ public class HealthServiceTest {
         when(mockQuery.forResource(Practitioner.class)).thenReturn(mockQueryForResource);
         when(mockQueryForResource.where((ICriterion<?>) any())).thenReturn(mockWhere);
         when(mockWhere.returnBundle(Bundle.class)).thenReturn(mockWhere);
+        when(mockWhere.elementsSubset(any(String[].class))).thenReturn(mockWhere);
         when(mockWhere.execute()).thenReturn(mockBundle);
 
         Practitioner practitioner = healthService.getPractitionerByIdentifier(identifierValue);
@@ -300,6 +516,7 @@ public class HealthServiceTest {
         IQuery<Bundle> mockQueryForResource = mock(IQuery.class);
         IQuery<Bundle> mockWhere1 = mock(IQuery.class);
         IQuery<Bundle> mockWhere2 = mock(IQuery.class);
+        IQuery<Bundle> mockRevInclude = mock(IQuery.class);
         ISort<Bundle> mockSort = mock(ISort.class);
         IQuery<Bundle> mockAscending = mock(IQuery.class);
         IQuery<Bundle> mockReturnBundle = mock(IQuery.class);
@@ -308,9 +525,12 @@ public class HealthServiceTest {
         when(mockQuery.forResource(Practitioner.class)).thenReturn(mockQueryForResource);
         when(mockQueryForResource.where(any(ICriterion.class))).thenReturn(mockWhere1);
         when(mockWhere1.where(any(ICriterion.class))).thenReturn(mockWhere2);
-        when(mockWhere2.sort()).thenReturn(mockSort);
+        when(mockWhere2.revInclude(any())).thenReturn(mockRevInclude);
+        when(mockRevInclude.sort()).thenReturn(mockSort);
         when(mockSort.ascending(any(IParam.class))).thenReturn(mockAscending);
         when(mockAscending.returnBundle(Bundle.class)).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.count(anyInt())).thenReturn(mockReturnBundle);
+        when(mockReturnBundle.elementsSubset(any(String[].class))).thenReturn(mockReturnBundle);
         when(mockReturnBundle.execute()).thenReturn(mockBundle);
 
         List<Practitioner> practitioners = new ArrayList<>();
@@ -326,6 +546,105 @@ public class HealthServiceTest {
         assertEquals("Johnny", practitioners.get(1).getNameFirstRep().getGivenAsSingleString(), "Second practitioner given name should match");
     }
 
+    @Test
+    void testGetPractitionersByNameIncludesRoles() {
+        String name = "John Doe";
+        String roleDisplay = "Doctor";
+
+        Practitioner mockPractitioner1 = createMockPractitioner("1234", "John Doe");
+        mockPractitioner1.setId("Practitioner/p1");
+        Practitioner mockPractitioner2 = createMockPractitioner("5678", "Johnny Doe");
+        mockPractitioner2.setId("Practitioner/p2");
+
+        PractitionerRole mockPractitionerRole = new PractitionerRole();
+        mockPractitionerRole.setPractitioner(new Reference("Practitioner/p1"));
+        mockPractitionerRole.addCode(new CodeableConcept().addCoding(new Coding()
+                .setSystem(PRACTITIONER_ROLE_SYSTEM)
+                .setDisplay(roleDisplay)));
+
+        Bundle mockBundle = new Bundle();
+        mockBundle.addEntry().setResource(mockPractitioner1);
+        mockBundle.addEntry().setResource(mockPractitioner2);
+        mockBundle.addEntry().setResource(mockPractitionerRole);
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockQueryForResource = mock(IQuery.class, RETURNS_SELF);
+        ISort<Bundle> mockSort = mock(ISort.class);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Practitioner.class)).thenReturn(mockQueryForResource);
+        when(mockQueryForResource.sort()).thenReturn(mockSort);
+        when(mockSort.ascending(any(IParam.class))).thenReturn(mockQueryForResource);
+        doReturn(mockQueryForResource).when(mockQueryForResource).returnBundle(Bundle.class);
+        when(mockQueryForResource.execute()).thenReturn(mockBundle);
+
+        List<PractitionerData> practitioners = healthService.getPractitionersByName(name)
+                .onItem().transform(healthService::getPractitionerData)
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(2, practitioners.size(), "Roles should not be emitted as practitioners");
+        assertEquals(roleDisplay, practitioners.get(0).getRole(), "Role should be resolved from the included PractitionerRole");
+        assertEquals("", practitioners.get(1).getRole(), "Practitioner without an included role should have an empty role");
+        verify(mockQuery, never()).forResource(PractitionerRole.class);
+    }
+
+    @Test
+    void testGetPractitionersByNameDoesNotLookUpRolesMissingFromPage() {
+        Practitioner mockPractitioner = createMockPractitioner("1234", "John Doe");
+        mockPractitioner.setId("Practitioner/p1");
+        Bundle mockBundle = new Bundle();
+        mockBundle.addEntry().setResource(mockPractitioner);
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockQueryForResource = mock(IQuery.class, RETURNS_SELF);
+        ISort<Bundle> mockSort = mock(ISort.class);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Practitioner.class)).thenReturn(mockQueryForResource);
+        when(mockQueryForResource.sort()).thenReturn(mockSort);
+        when(mockSort.ascending(any(IParam.class))).thenReturn(mockQueryForResource);
+        doReturn(mockQueryForResource).when(mockQueryForResource).returnBundle(Bundle.class);
+        when(mockQueryForResource.execute()).thenReturn(mockBundle);
+
+        List<PractitionerData> practitioners = healthService.getPractitionersByName("John")
+                .onItem().transform(healthService::getPractitionerData)
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(1, practitioners.size(), "Practitioner should be emitted");
+        assertEquals("", practitioners.get(0).getRole(), "Practitioner on a page without roles should have an empty role");
+        verify(mockQueryForResource).revInclude(PractitionerRole.INCLUDE_PRACTITIONER);
+        verify(mockQuery, never()).forResource(PractitionerRole.class);
+    }
+
+    @Test
+    void testGetPractitionersByNameSkipsRolesOutsideProjection() {
+        Projection fields = Projection.parse("id,fullName", Projection.PRACTITIONER);
+        Bundle mockBundle = new Bundle();
+        mockBundle.addEntry().setResource(createMockPractitioner("1234", "John Doe"));
+
+        IUntypedQuery mockQuery = mock(IUntypedQuery.class);
+        IQuery<Bundle> mockQueryForResource = mock(IQuery.class, RETURNS_SELF);
+        ISort<Bundle> mockSort = mock(ISort.class);
+        when(mockClient.search()).thenReturn(mockQuery);
+        when(mockQuery.forResource(Practitioner.class)).thenReturn(mockQueryForResource);
+        when(mockQueryForResource.sort()).thenReturn(mockSort);
+        when(mockSort.ascending(any(IParam.class))).thenReturn(mockQueryForResource);
+        doReturn(mockQueryForResource).when(mockQueryForResource).returnBundle(Bundle.class);
+        when(mockQueryForResource.execute()).thenReturn(mockBundle);
+
+        List<PractitionerData> practitioners = healthService.getPractitionersByName("John", fields)
+                .onItem().transform(practitioner -> healthService.getPractitionerData(practitioner, fields))
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals("1234", practitioners.get(0).getId(), "Projected identifier should be extracted");
+        assertEquals("John Doe", practitioners.get(0).getFullName(), "Projected name should be extracted");
+        assertNull(practitioners.get(0).getRole(), "Role outside the projection should not be resolved");
+        verify(mockQueryForResource, never()).revInclude(any());
+        verify(mockQueryForResource).elementsSubset("identifier", "name");
+        verify(mockQuery, never()).forResource(PractitionerRole.class);
+    }
+
     @Test
     void testGetPatientData() {
         String identifierValue = "12345";
@@ -342,6 +661,20 @@ public class HealthServiceTest {
         assertEquals("Female", patientData.getGender().name(), "Patient gender should match");
     }
 
+    @Test
+    void testGetPatientDataExtractsOnlyProjectedFields() {
+        Patient mockPatient = createMockPatient("12345", "John Doe");
+        mockPatient.setGender(Enumerations.AdministrativeGender.FEMALE);
+        mockPatient.addAddress().addLine("Storgatan 1").setCity("Göteborg");
+
+        PatientData patientData = healthService.getPatientData(mockPatient, Projection.parse("id,fullName", Projection.PATIENT));
+
+        assertEquals("12345", patientData.getId(), "Projected identifier should be extracted");
+        assertEquals("John Doe", patientData.getFullName(), "Projected name should be extracted");
+        assertNull(patientData.getGender(), "Gender outside the projection should not be extracted");
+        assertNull(patientData.getCity(), "Address outside the projection should not be extracted");
+    }
+
     @Test
     void testGetPractitionerData() {
         String hsaId = "12345";
@@ -426,6 +759,7 @@ public class HealthServiceTest {
         when(mockQuery.forResource(PractitionerRole.class)).thenReturn(mockQueryForResource);
         when(mockQueryForResource.where((ICriterion<?>) any())).thenReturn(mockWhere);
         when(mockWhere.returnBundle(Bundle.class)).thenReturn(mockWhere);
+        when(mockWhere.elementsSubset(any(String[].class))).thenReturn(mockWhere);
         when(mockWhere.execute()).thenReturn(mockBundle);
     }
 }
\ No newline at end of file
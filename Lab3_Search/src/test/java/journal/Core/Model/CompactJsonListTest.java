@@ -0,0 +1,41 @@
+package journal.Core.Model;
+
+import io.quarkus.test.junit.QuarkusTest;
+import journal.Core.SearchResultCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class CompactJsonListTest {
+
+    @Test
+    void testEventsAreDecodedUnchanged() {
+        List<String> events = List.of(
+                "{\"id\":\"19900101-1234\",\"fullName\":\"Åsa Öberg\",\"city\":\"Göteborg\"}",
+                "",
+                "{\"id\":\"19850505-4321\",\"fullName\":\"John Doe\"}");
+
+        CompactJsonList compactEvents = CompactJsonList.of(events);
+
+        assertEquals(events, compactEvents, "Every event should be decoded unchanged and in order");
+        assertThrows(IndexOutOfBoundsException.class, () -> compactEvents.get(3));
+    }
+
+    @Test
+    void testCompactFormIsSmallerThanSeparateStrings() {
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            events.add("{\"id\":\"19900101-" + i + "\",\"fullName\":\"Patient Number" + i + "\"}");
+        }
+        long stringBytes = events.stream().mapToLong(SearchResultCache::weigh).sum();
+
+        long compactBytes = CompactJsonList.of(events).estimatedBytes();
+
+        assertTrue(compactBytes < stringBytes,
+                "Compact form should take less heap than separate strings (" + compactBytes + " vs " + stringBytes + " bytes)");
+    }
+}
@@ -0,0 +1,46 @@
+package journal.Core.Model;
+
+import io.quarkus.test.junit.QuarkusTest;
+import journal.Core.Gender;
+import journal.Core.SearchResultCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class CompactPatientListTest {
+
+    @Test
+    void testPatientsAreDecodedUnchanged() {
+        List<PatientData> patients = List.of(
+                new PatientData("19900101-1234", "Åsa Öberg", Gender.Female, "asa@example.com", "0701234567", "Storgatan 1", "Göteborg", "41101"),
+                new PatientData("19850505-4321", "John Doe", null, null, "", "", "", ""),
+                new PatientData(null, "Jane Doe", Gender.Unknown, "", null, null, null, null));
+
+        CompactPatientList compactPatients = CompactPatientList.of(patients);
+
+        assertEquals(patients.size(), compactPatients.size(), "Every patient should be stored");
+        for (int i = 0; i < patients.size(); i++) {
+            assertEquals(patients.get(i).toString(), compactPatients.get(i).toString(), "Patient " + i + " should be decoded unchanged");
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> compactPatients.get(3));
+    }
+
+    @Test
+    void testCompactFormIsSmallerThanPatientData() {
+        List<PatientData> patients = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            patients.add(new PatientData("19900101-" + i, "Patient Number" + i, Gender.values()[i % 4], "", "07012345" + i,
+                    "Storgatan " + i, i % 2 == 0 ? "Stockholm" : "Uppsala", i % 2 == 0 ? "11122" : "75320"));
+        }
+        long patientDataBytes = patients.stream().mapToLong(SearchResultCache::weigh).sum();
+
+        long compactBytes = CompactPatientList.of(patients).estimatedBytes();
+
+        assertTrue(compactBytes * 2 < patientDataBytes,
+                "Compact form should take less than half the heap (" + compactBytes + " vs " + patientDataBytes + " bytes)");
+    }
+}
@@ -0,0 +1,33 @@
+package journal.Core;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class PatientIdSetTest {
+
+    @Test
+    void testAddReportsDuplicates() {
+        PatientIdSet patientIdSet = new PatientIdSet();
+
+        assertTrue(patientIdSet.add("p1"), "First id should be added");
+        assertTrue(patientIdSet.add("p2"), "Second id should be added");
+        assertFalse(patientIdSet.add("p1"), "Repeated id should be reported as a duplicate");
+        assertEquals(2, patientIdSet.size(), "Set should contain two ids");
+    }
+
+    @Test
+    void testAddKeepsIdsWhenGrowing() {
+        PatientIdSet patientIdSet = new PatientIdSet();
+
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(patientIdSet.add("patient-" + i), "New id should be added");
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertFalse(patientIdSet.add("patient-" + i), "Every id should still be present after growing");
+        }
+        assertEquals(100_000, patientIdSet.size(), "Set should contain every id once");
+    }
+}
@@ -0,0 +1,94 @@
+package journal.Core;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.ws.rs.BadRequestException;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class PatientIndexTest {
+    private static final String PATIENT_SYSTEM = "http://electronichealth.se/identifier/personnummer";
+
+    private PatientIndex patientIndex;
+
+    @BeforeEach
+    void setup() {
+        patientIndex = new PatientIndex();
+        patientIndex.put(createMockPatient("p1", "Johan Åberg", "Practitioner/d1"));
+        patientIndex.put(createMockPatient("p2", "Anna Johansson", "Practitioner/d2"));
+        patientIndex.put(createMockPatient("p3", "Erik Berg", "Practitioner/d1"));
+    }
+
+    @Test
+    void testSearchMatchesNamePartsIgnoringCaseAndAccents() {
+        List<String> ids = patientIndex.search("BERG", null);
+
+        assertEquals(List.of("p1", "p3"), ids, "Both family names containing berg should match, sorted by family name");
+    }
+
+    @Test
+    void testSearchMatchesGivenAndFamilyNames() {
+        List<String> ids = patientIndex.search("johan", null);
+
+        assertEquals(List.of("p1", "p2"), ids, "Given name Johan and family name Johansson should both match");
+    }
+
+    @Test
+    void testSearchWithShortQuery() {
+        List<String> ids = patientIndex.search("er", null);
+
+        assertEquals(List.of("p1", "p3"), ids, "Queries shorter than a trigram should still match");
+    }
+
+    @Test
+    void testSearchRejectsBlankName() {
+        assertThrows(BadRequestException.class, () -> patientIndex.search(null, null), "A missing name should be rejected");
+        assertThrows(BadRequestException.class, () -> patientIndex.search("  ", "d1"), "A blank name should be rejected");
+    }
+
+    @Test
+    void testSearchFiltersByGeneralPractitioner() {
+        List<String> ids = patientIndex.search("berg", "d1");
+
+        assertEquals(List.of("p1", "p3"), ids, "Patients of the practitioner should match");
+        assertTrue(patientIndex.search("anna", "d1").isEmpty(), "Patients of other practitioners should not match");
+    }
+
+    @Test
+    void testSearchMatchesPersonalIdentityNumber() {
+        Patient patient = createMockPatient("p4", "Lisa Holm", "Practitioner/d2");
+        patient.getIdentifierFirstRep().setValue("19121212-1212");
+        patientIndex.put(patient);
+
+        assertEquals(List.of("p4"), patientIndex.search("19121212", null), "Personal identity number should match");
+        assertEquals(List.of("p4"), patientIndex.search("19121212-1212", "d2"), "Full number should match with the practitioner filter");
+    }
+
+    @Test
+    void testPutReplacesPreviousName() {
+        patientIndex.put(createMockPatient("p3", "Erik Lind", "Practitioner/d1"));
+
+        assertEquals(List.of("p1"), patientIndex.search("berg", null), "Old name should no longer match");
+        assertEquals(List.of("p3"), patientIndex.search("lind", null), "New name should match");
+    }
+
+    @Test
+    void testIndexIsNotReadyWhenDisabled() {
+        assertFalse(patientIndex.isReady(), "Disabled index should not answer searches");
+    }
+
+    private Patient createMockPatient(String id, String fullName, String generalPractitioner) {
+        Patient mockPatient = new Patient();
+        mockPatient.setId(id);
+        mockPatient.addIdentifier().setSystem(PATIENT_SYSTEM).setValue(id);
+        mockPatient.addName().setFamily(fullName.split(" ")[1]).addGiven(fullName.split(" ")[0]);
+        mockPatient.addGeneralPractitioner(new Reference(generalPractitioner));
+        return mockPatient;
+    }
+}
@@ -0,0 +1,100 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.gclient.IQuery;
+import ca.uhn.fhir.rest.gclient.IUntypedQuery;
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@QuarkusTest
+@TestProfile(PractitionerCacheTest.ShortExpiry.class)
+public class PractitionerCacheTest {
+    private static final String PRACTITIONER_SYSTEM = "http://terminology.hl7.org/CodeSystem/v2-0203";
+
+    public static class ShortExpiry implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("quarkus.cache.caffeine.\"practitioner-by-identifier\".expire-after-write", "300ms");
+        }
+    }
+
+    @Inject
+    HealthService healthService;
+
+    @Inject
+    @CacheName("practitioner-by-identifier")
+    Cache cache;
+
+    private HealthService target;
+    private IGenericClient originalClient;
+    private IQuery<Bundle> mockQuery;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        cache.invalidateAll().await().indefinitely();
+        target = ClientProxy.unwrap(healthService);
+        originalClient = target.client;
+
+        IGenericClient mockClient = mock(IGenericClient.class);
+        IUntypedQuery<Bundle> mockUntypedQuery = mock(IUntypedQuery.class);
+        mockQuery = mock(IQuery.class, RETURNS_SELF);
+        when(mockClient.search()).thenReturn((IUntypedQuery) mockUntypedQuery);
+        when(mockUntypedQuery.forResource(Practitioner.class)).thenReturn((IQuery) mockQuery);
+        target.client = mockClient;
+    }
+
+    @AfterEach
+    void tearDown() {
+        target.client = originalClient;
+    }
+
+    @Test
+    void testFoundPractitionerIsCachedUntilExpiry() throws InterruptedException {
+        when(mockQuery.execute()).thenReturn(createPractitionerBundle("12345"));
+
+        assertEquals("12345", healthService.getPractitionerByIdentifier("12345").getIdentifierFirstRep().getValue(),
+                "Practitioner should be found");
+        assertEquals("12345", healthService.getPractitionerByIdentifier("12345").getIdentifierFirstRep().getValue(),
+                "Cached practitioner should be returned");
+        verify(mockQuery, times(1)).execute();
+
+        Thread.sleep(500);
+        healthService.getPractitionerByIdentifier("12345");
+        verify(mockQuery, times(2)).execute();
+    }
+
+    @Test
+    void testMissIsNotCached() {
+        when(mockQuery.execute()).thenReturn(new Bundle(), createPractitionerBundle("12345"));
+
+        assertNull(healthService.getPractitionerByIdentifier("12345"), "Unknown practitioner should not be found");
+        assertNotNull(healthService.getPractitionerByIdentifier("12345"), "Practitioner created after a miss should be found");
+        verify(mockQuery, times(2)).execute();
+    }
+
+    private static Bundle createPractitionerBundle(String identifierValue) {
+        Practitioner practitioner = new Practitioner();
+        practitioner.setId("p1");
+        practitioner.addIdentifier(new Identifier().setSystem(PRACTITIONER_SYSTEM).setValue(identifierValue));
+        Bundle bundle = new Bundle();
+        bundle.addEntry().setResource(practitioner);
+        return bundle;
+    }
+}
@@ -0,0 +1,271 @@
+package journal.Core;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.subscription.Cancellable;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.http.HttpServer;
+import io.vertx.mutiny.core.http.HttpServerRequest;
+import journal.Core.Model.PractitionerData;
+import org.hl7.fhir.r4.model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@QuarkusTest
+public class ReactiveHealthServiceTest {
+    private static final String PATIENT_SYSTEM = "http://electronichealth.se/identifier/personnummer";
+    private static final String PRACTITIONER_SYSTEM = "http://terminology.hl7.org/CodeSystem/v2-0203";
+    private static final String PRACTITIONER_ROLE_SYSTEM = "http://terminology.hl7.org/CodeSystem/practitioner-role";
+    private static final String CONDITION_SYSTEM = "http://snomed.info/sct";
+
+    private final FhirContext fhirContext = FhirContext.forR4();
+    private final Map<String, Bundle> pages = new HashMap<>();
+    private final List<HttpServerRequest> requests = new ArrayList<>();
+    private final Map<String, String> rejectedParams = new HashMap<>();
+    private final Map<String, CountDownLatch> hangingPaths = new HashMap<>();
+
+    private Vertx vertx;
+    private HttpServer server;
+    private String serverUrl;
+    private ReactiveHealthService reactiveHealthService;
+
+    @BeforeEach
+    void startServer() {
+        vertx = Vertx.vertx();
+        server = vertx.createHttpServer()
+                .requestHandler(request -> {
+                    requests.add(request);
+                    String rejection = request.params().names().stream()
+                            .filter(rejectedParams::containsKey)
+                            .map(rejectedParams::get)
+                            .findFirst().orElse(null);
+                    if (rejection != null) {
+                        OperationOutcome outcome = new OperationOutcome();
+                        outcome.addIssue().setSeverity(OperationOutcome.IssueSeverity.ERROR).setDiagnostics(rejection);
+                        request.response()
+                                .setStatusCode(400)
+                                .putHeader("Content-Type", "application/fhir+json")
+                                .endAndForget(fhirContext.newJsonParser().encodeResourceToString(outcome));
+                        return;
+                    }
+                    CountDownLatch closed = hangingPaths.get(request.path());
+                    if (closed != null) {
+                        request.connection().closeHandler(closed::countDown);
+                        return;
+                    }
+                    Bundle page = pages.get(request.path());
+                    if (page == null) {
+                        request.response().setStatusCode(404).endAndForget();
+                        return;
+                    }
+                    request.response()
+                            .putHeader("Content-Type", "application/fhir+json")
+                            .endAndForget(fhirContext.newJsonParser().encodeResourceToString(page));
+                })
+                .listenAndAwait(0);
+        serverUrl = "http://localhost:" + server.actualPort() + "/fhir";
+        FhirClientFactory clientFactory = mock(FhirClientFactory.class);
+        when(clientFactory.getServerUrl()).thenReturn(serverUrl);
+        when(clientFactory.createHttpClient(vertx)).thenReturn(vertx.createHttpClient());
+        reactiveHealthService = new ReactiveHealthService(vertx, fhirContext, clientFactory, new PatientIndex(), SearchMetrics.NONE, SearchTracing.NONE, HapiLimiter.NONE, 25, 20, 4, true);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.closeAndAwait();
+        vertx.closeAndAwait();
+    }
+
+    @Test
+    void testGetPatientsByNameFollowsNextPages() {
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        firstPage.addLink().setRelation(Bundle.LINK_NEXT).setUrl(serverUrl + "/page-2?_getpages=abc&_getpagesoffset=25");
+        Bundle secondPage = new Bundle();
+        secondPage.addEntry().setResource(createMockPatient("2222", "Johnny Doe"));
+        pages.put("/fhir/Patient", firstPage);
+        pages.put("/fhir/page-2", secondPage);
+
+        List<Patient> patients = reactiveHealthService.getPatientsByName("John")
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(2, patients.size(), "Patients from both pages should be emitted");
+        assertEquals("1111", patients.get(0).getIdentifierFirstRep().getValue(), "First page should be emitted first");
+        assertEquals("2222", patients.get(1).getIdentifierFirstRep().getValue(), "Second page should follow the first");
+        assertEquals("John", requests.get(0).getParam("name:contains"), "Name should be searched with contains");
+        assertEquals(PATIENT_SYSTEM + "|", requests.get(0).getParam("identifier"), "Search should be limited to the patient system");
+        assertEquals("25", requests.get(0).getParam("_count"), "Page size should be requested");
+        assertEquals("identifier,name,gender,telecom,address", requests.get(0).getParam("_elements"), "Only mapped patient elements should be requested");
+        assertEquals("_getpages=abc&_getpagesoffset=25", requests.get(1).query(), "Next page should be fetched from its link as is");
+    }
+
+    @Test
+    void testGetPractitionersByNameIncludesRoles() {
+        String roleDisplay = "Doctor";
+
+        Practitioner mockPractitioner = createMockPractitioner("1234", "John Doe");
+        mockPractitioner.setId("p1");
+        PractitionerRole mockPractitionerRole = new PractitionerRole();
+        mockPractitionerRole.setPractitioner(new Reference("Practitioner/p1"));
+        mockPractitionerRole.addCode(new CodeableConcept().addCoding(new Coding()
+                .setSystem(PRACTITIONER_ROLE_SYSTEM)
+                .setDisplay(roleDisplay)));
+
+        Bundle page = new Bundle();
+        page.addEntry().setResource(mockPractitioner);
+        page.addEntry().setResource(mockPractitionerRole);
+        pages.put("/fhir/Practitioner", page);
+
+        HealthService healthService = new HealthService();
+        List<PractitionerData> practitioners = reactiveHealthService.getPractitionersByName("John")
+                .onItem().transform(healthService::getPractitionerData)
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(1, practitioners.size(), "Roles should not be emitted as practitioners");
+        assertEquals(roleDisplay, practitioners.get(0).getRole(), "Role should be resolved from the included PractitionerRole");
+        assertEquals("PractitionerRole:practitioner", requests.get(0).getParam("_revinclude"), "Roles should be requested with _revinclude");
+        assertEquals(1, requests.size(), "Roles should not be looked up separately");
+    }
+
+    @Test
+    void testGetPatientsByConditionCodesJoinsCodesIntoOneSearch() {
+        pages.put("/fhir/Condition", new Bundle());
+
+        reactiveHealthService.getPatientsByConditionCodes(List.of("112233", "445566"))
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(1, requests.size(), "Codes should be searched with a single request");
+        assertEquals(CONDITION_SYSTEM + "|112233," + CONDITION_SYSTEM + "|445566", requests.get(0).getParam("code"),
+                "Codes should be joined into one token search");
+    }
+
+    @Test
+    void testGetPatientsByNameAndPractitionerIdentifierUsesChainedSearch() {
+        Bundle page = new Bundle();
+        page.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        pages.put("/fhir/Patient", page);
+
+        List<Patient> patients = reactiveHealthService.getPatientsByNameAndPractitionerIdentifier("John", "9999")
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(1, patients.size(), "Patients of the practitioner should be emitted");
+        assertEquals(1, requests.size(), "Practitioner should not be looked up separately");
+        assertEquals(PRACTITIONER_SYSTEM + "|9999", requests.get(0).getParam("general-practitioner:Practitioner.identifier"),
+                "Practitioner should be matched with a chained identifier");
+    }
+
+    @Test
+    void testGetPatientsByConditionCodesAndPractitionerIdentifierFallsBackWhenChainIsRejected() {
+        rejectedParams.put("subject:Patient.general-practitioner:Practitioner.identifier",
+                "Unknown search parameter \"subject:Patient.general-practitioner:Practitioner.identifier\" for resource type \"Condition\"");
+        Practitioner mockPractitioner = createMockPractitioner("9999", "Samantha Smith");
+        mockPractitioner.setId("p1");
+        Bundle practitionerPage = new Bundle();
+        practitionerPage.addEntry().setResource(mockPractitioner);
+        pages.put("/fhir/Practitioner", practitionerPage);
+        Bundle conditionPage = new Bundle();
+        conditionPage.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        pages.put("/fhir/Condition", conditionPage);
+
+        List<Patient> patients = reactiveHealthService.getPatientsByConditionCodesAndPractitionerIdentifier(List.of("112233"), "9999")
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(1, patients.size(), "Patients should be found with the two-step search");
+        assertEquals(3, requests.size(), "Rejected chain should be followed by a lookup and a search");
+        assertEquals("Practitioner/p1", requests.get(2).getParam("subject:Patient.general-practitioner"),
+                "Fallback should match the practitioner by id");
+    }
+
+    @Test
+    void testGetPatientsByNameAndPractitionerIdentifierPassesOnOtherBadRequests() {
+        rejectedParams.put("name:contains", "Invalid name value");
+        Bundle page = new Bundle();
+        page.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        pages.put("/fhir/Patient", page);
+
+        assertThrows(InvalidRequestException.class, () -> reactiveHealthService.getPatientsByNameAndPractitionerIdentifier("John", "9999")
+                .collect().asList()
+                .await().indefinitely(), "Bad request not caused by the chain should be passed on");
+        rejectedParams.clear();
+        reactiveHealthService.getPatientsByNameAndPractitionerIdentifier("John", "9999")
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(2, requests.size(), "Practitioner should not be looked up separately");
+        assertEquals(PRACTITIONER_SYSTEM + "|9999", requests.get(1).getParam("general-practitioner:Practitioner.identifier"),
+                "Chained search should stay enabled after an unrelated bad request");
+    }
+
+    @Test
+    void testGetPatientsByNameResetsRequestOnCancel() throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        hangingPaths.put("/fhir/Patient", closed);
+
+        Cancellable search = reactiveHealthService.getPatientsByName("John")
+                .subscribe().with(patient -> fail("Unanswered search should not emit"));
+        Thread.sleep(200);
+        search.cancel();
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS), "Cancelled request should be reset instead of waiting for HAPI");
+    }
+
+    @Test
+    void testGetPatientsByNameFetchesNoFurtherPagesAfterCancel() throws InterruptedException {
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        firstPage.addLink().setRelation(Bundle.LINK_NEXT).setUrl(serverUrl + "/page-2");
+        Bundle secondPage = new Bundle();
+        secondPage.addEntry().setResource(createMockPatient("2222", "Johnny Doe"));
+        pages.put("/fhir/Patient", firstPage);
+        pages.put("/fhir/page-2", secondPage);
+
+        List<Patient> patients = reactiveHealthService.getPatientsByName("John")
+                .select().first(1)
+                .collect().asList()
+                .await().indefinitely();
+        Thread.sleep(200);
+
+        assertEquals(1, patients.size(), "Only the requested patient should be emitted");
+        assertEquals(1, requests.size(), "Next page should not be fetched after cancel");
+    }
+
+    @Test
+    void testGetPatientsByConditionCodeFailsOnServerError() {
+        assertThrows(BaseServerResponseException.class, () -> reactiveHealthService.getPatientsByConditionCodes(List.of("112233"))
+                .collect().asList()
+                .await().indefinitely());
+    }
+
+    private Patient createMockPatient(String identifierValue, String fullName) {
+        Patient mockPatient = new Patient();
+        mockPatient.addIdentifier().setSystem(PATIENT_SYSTEM).setValue(identifierValue);
+        mockPatient.addName().setFamily(fullName.split(" ")[1]).addGiven(fullName.split(" ")[0]);
+        return mockPatient;
+    }
+
+    private Practitioner createMockPractitioner(String identifierValue, String fullName) {
+        Practitioner mockPractitioner = new Practitioner();
+        mockPractitioner.addIdentifier().setSystem(PRACTITIONER_SYSTEM).setValue(identifierValue);
+        mockPractitioner.addName().setFamily(fullName.split(" ")[1]).addGiven(fullName.split(" ")[0]);
+        return mockPractitioner;
+    }
+}
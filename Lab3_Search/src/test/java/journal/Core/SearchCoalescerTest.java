@@ -0,0 +1,112 @@
+package journal.Core;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class SearchCoalescerTest {
+    private final AtomicInteger upstreamSubscriptions = new AtomicInteger();
+    private final AtomicReference<MultiEmitter<? super String>> upstream = new AtomicReference<>();
+    private final AtomicBoolean upstreamCancelled = new AtomicBoolean();
+    private SearchCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new SearchCoalescer();
+        coalescer.enabled = true;
+        coalescer.bufferSize = 4;
+    }
+
+    @Test
+    void testConcurrentSearchesShareOneUpstream() {
+        AssertSubscriber<String> first = coalescer.coalesce("patients-by-condition?123", this::search)
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+        upstream.get().emit("p1");
+        AssertSubscriber<String> lateJoiner = coalescer.coalesce("patients-by-condition?123", this::search)
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+        upstream.get().emit("p2");
+        upstream.get().complete();
+
+        assertEquals(1, upstreamSubscriptions.get(), "Identical searches should share one upstream walk");
+        assertEquals(List.of("p1", "p2"), first.assertCompleted().getItems(), "First subscriber should receive every result");
+        assertEquals(List.of("p1", "p2"), lateJoiner.assertCompleted().getItems(), "Late joiner should replay results already fetched");
+        assertEquals(0, coalescer.inFlight(), "Finished search should be forgotten");
+    }
+
+    @Test
+    void testDifferentSearchesAndLaterSearchesFetchAgain() {
+        coalescer.coalesce("patients-by-condition?123", this::search)
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+        upstream.get().complete();
+        coalescer.coalesce("patients-by-condition?123", this::search)
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+        coalescer.coalesce("patients-by-condition?456", this::search)
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+
+        assertEquals(3, upstreamSubscriptions.get(), "Finished and different searches should not be shared");
+    }
+
+    @Test
+    void testUpstreamIsCancelledWhenEverySubscriberLeaves() {
+        AssertSubscriber<String> first = coalescer.coalesce("patients-by-name?john", this::search)
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+        AssertSubscriber<String> second = coalescer.coalesce("patients-by-name?john", this::search)
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+
+        first.cancel();
+        assertFalse(upstreamCancelled.get(), "Upstream should keep running while a subscriber remains");
+        second.cancel();
+        assertTrue(upstreamCancelled.get(), "Upstream should be cancelled once every subscriber has left");
+        assertEquals(0, coalescer.inFlight(), "Abandoned search should be forgotten");
+    }
+
+    @Test
+    void testUpstreamIsReadNoFurtherThanTheBufferAheadOfTheSlowestSubscriber() {
+        AssertSubscriber<String> fast = coalescer.coalesce("patients-by-condition?123", this::search)
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+        AssertSubscriber<String> slow = coalescer.coalesce("patients-by-condition?123", this::search)
+                .subscribe().withSubscriber(AssertSubscriber.create(1));
+
+        int emitted = emitWhileRequested(0);
+        assertEquals(5, emitted, "Upstream should stop one buffer ahead of the slow subscriber");
+        assertEquals(5, fast.getItems().size(), "Fast subscriber should receive what has been fetched");
+        assertEquals(List.of("p0"), slow.getItems(), "Slow subscriber should only receive what it requested");
+
+        slow.request(3);
+        emitted = emitWhileRequested(emitted);
+        assertEquals(8, emitted, "Upstream should follow the slow subscriber's demand");
+        assertEquals(List.of("p0", "p1", "p2", "p3"), slow.getItems(), "Slow subscriber should receive results in order");
+        assertFalse(coalescer.coalesce("patients-by-condition?123", this::search)
+                        .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE))
+                        .getItems().contains("p0"),
+                "Searches arriving after results were dropped should start their own walk");
+        assertEquals(2, upstreamSubscriptions.get(), "Late search should have its own upstream");
+    }
+
+    private int emitWhileRequested(int emitted) {
+        MultiEmitter<? super String> emitter = upstream.get();
+        while (emitter.requested() > 0 && emitted < 100) {
+            emitter.emit("p" + emitted++);
+        }
+        return emitted;
+    }
+
+    private Multi<String> search() {
+        return Multi.createFrom().emitter(emitter -> {
+            upstreamSubscriptions.incrementAndGet();
+            emitter.onTermination(() -> upstreamCancelled.set(true));
+            upstream.set(emitter);
+        });
+    }
+}
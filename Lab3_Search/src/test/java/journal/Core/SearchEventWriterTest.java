@@ -0,0 +1,96 @@
+package journal.Core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import journal.Core.Model.PatientData;
+import journal.Core.Model.PractitionerData;
+import org.hl7.fhir.r4.model.ContactPoint;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class SearchEventWriterTest {
+    private static final String PATIENT_SYSTEM = "http://electronichealth.se/identifier/personnummer";
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    private final HealthService healthService = new HealthService();
+
+    @Test
+    void testWritePatientMatchesPatientDataJson() throws Exception {
+        Patient completePatient = createMockPatient("19900101-1234", "Åsa \"Ösa\" Öberg");
+        completePatient.setGender(Enumerations.AdministrativeGender.FEMALE);
+        completePatient.addTelecom().setSystem(ContactPoint.ContactPointSystem.EMAIL).setValue("");
+        completePatient.addTelecom().setSystem(ContactPoint.ContactPointSystem.EMAIL).setValue("asa@example.com");
+        completePatient.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setValue("070-123\t45");
+        completePatient.addAddress().addLine("Storgatan 1").setCity("Göteborg").setPostalCode("41101");
+        Patient sparsePatient = new Patient();
+        sparsePatient.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE);
+        SearchEventWriter eventWriter = new SearchEventWriter(objectMapper);
+
+        for (Patient patient : List.of(completePatient, sparsePatient, completePatient)) {
+            PatientData patientData = healthService.getPatientData(patient);
+            assertEquals(objectMapper.writeValueAsString(patientData), eventWriter.writePatient(patient),
+                    "Patient written from the HAPI model should match the PatientData JSON");
+            assertEquals(objectMapper.writeValueAsString(patientData), eventWriter.write(patientData),
+                    "Patient written from PatientData should match the PatientData JSON");
+        }
+    }
+
+    @Test
+    void testWritePatientWritesOnlyProjectedFields() {
+        Patient patient = createMockPatient("19900101-1234", "Åsa Öberg");
+        patient.addAddress().setCity("Göteborg");
+        Projection fields = Projection.parse("city,id", Projection.PATIENT);
+        SearchEventWriter eventWriter = new SearchEventWriter(objectMapper);
+
+        assertEquals("{\"id\":\"19900101-1234\",\"city\":\"Göteborg\"}", eventWriter.writePatient(patient, fields),
+                "Only the projected fields should be written");
+        assertEquals(eventWriter.writePatient(patient, fields), eventWriter.write(healthService.getPatientData(patient, fields), fields),
+                "Projected PatientData should be written like the HAPI model");
+    }
+
+    @Test
+    void testWritePractitionerMatchesPractitionerDataJson() throws Exception {
+        PractitionerData practitionerData = new PractitionerData("SE1234", "John Doe", "Doctor", null, "08-123");
+        SearchEventWriter eventWriter = new SearchEventWriter(objectMapper);
+
+        assertEquals(objectMapper.writeValueAsString(practitionerData), eventWriter.write(practitionerData),
+                "Practitioner should match the PractitionerData JSON");
+    }
+
+    @Test
+    void testWritePractitionerFromHapiModelMatchesPractitionerDataJson() throws Exception {
+        Practitioner practitioner = new Practitioner();
+        practitioner.addIdentifier().setSystem("http://terminology.hl7.org/CodeSystem/v2-0203").setValue("SE1234");
+        practitioner.addName().setFamily("Doe").addGiven("John");
+        practitioner.addTelecom().setSystem(ContactPoint.ContactPointSystem.EMAIL).setValue("john@example.com");
+        practitioner.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setValue("08-123");
+        Projection withoutRole = Projection.parse("id,fullName,email,phone", Projection.PRACTITIONER);
+        SearchEventWriter eventWriter = new SearchEventWriter(objectMapper);
+
+        PractitionerData practitionerData = healthService.getPractitionerData(practitioner, withoutRole);
+        assertEquals(eventWriter.write(practitionerData, withoutRole),
+                eventWriter.writePractitioner(practitioner, withoutRole, unused -> fail("Role should not be looked up")),
+                "Practitioner written from the HAPI model should match the PractitionerData JSON");
+        assertEquals(objectMapper.writeValueAsString(new PractitionerData(practitionerData.getId(), practitionerData.getFullName(), "Doctor",
+                        practitionerData.getEmail(), practitionerData.getPhone())),
+                eventWriter.writePractitioner(practitioner, Projection.PRACTITIONER, unused -> "Doctor"),
+                "Practitioner with role should match the PractitionerData JSON");
+    }
+
+    private Patient createMockPatient(String identifierValue, String fullName) {
+        Patient mockPatient = new Patient();
+        mockPatient.addIdentifier().setSystem(PATIENT_SYSTEM).setValue(identifierValue);
+        mockPatient.addName().setFamily(fullName.substring(fullName.indexOf(' ') + 1)).addGiven(fullName.split(" ")[0]);
+        return mockPatient;
+    }
+}
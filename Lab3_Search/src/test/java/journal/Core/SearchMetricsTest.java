@@ -0,0 +1,75 @@
+package journal.Core;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class SearchMetricsTest {
+
+    @Test
+    void testStreamRecordsFirstEventDurationAndActiveStreams() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SearchMetrics metrics = new SearchMetrics(registry);
+
+        AssertSubscriber<String> subscriber = metrics.stream("patients-by-name", Multi.createFrom().items("a", "b"))
+                .subscribe().withSubscriber(AssertSubscriber.create(1));
+        assertEquals(1, registry.get("search.stream.active").tag("endpoint", "patients-by-name").gauge().value(),
+                "Stream should be active until it terminates");
+        assertEquals(1, registry.get("search.stream.first-event").timer().count(), "First event should be timed once");
+
+        subscriber.request(1).assertCompleted();
+        assertEquals(0, registry.get("search.stream.active").gauge().value(), "Stream should not be active after completion");
+        assertEquals(1, registry.get("search.stream.first-event").timer().count(), "Later events should not be timed as first event");
+        assertEquals(1, registry.get("search.stream.duration").tag("outcome", "completed").timer().count(),
+                "Completed stream duration should be recorded");
+    }
+
+    @Test
+    void testStreamRecordsCancellation() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SearchMetrics metrics = new SearchMetrics(registry);
+
+        metrics.stream("patients-by-condition", Multi.createFrom().items("a", "b"))
+                .subscribe().withSubscriber(AssertSubscriber.create(1))
+                .cancel();
+
+        assertEquals(0, registry.get("search.stream.active").gauge().value(), "Cancelled stream should not be active");
+        assertEquals(1, registry.get("search.stream.duration").tag("outcome", "cancelled").timer().count(),
+                "Cancelled stream duration should be recorded");
+    }
+
+    @Test
+    void testPagesRecordsPagesPerQueryAndResourcesPerPage() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SearchMetrics metrics = new SearchMetrics(registry);
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(new Patient());
+        firstPage.addEntry().setResource(new Patient());
+        Bundle secondPage = new Bundle();
+        secondPage.addEntry().setResource(new Patient());
+
+        List<Bundle> pages = metrics.pages(ResourceType.Condition, Multi.createFrom().items(firstPage, secondPage))
+                .collect().asList()
+                .await().indefinitely();
+        Bundle timed = metrics.time(FhirOperation.Next, ResourceType.Condition, () -> secondPage);
+
+        assertEquals(2, pages.size(), "Pages should pass through unchanged");
+        assertSame(secondPage, timed, "Timed request should return its result");
+        assertEquals(2, registry.get("search.query.pages").tag("resource", "Condition").summary().totalAmount(),
+                "Pages per query should be recorded when the query terminates");
+        assertEquals(3, registry.get("search.page.resources").summary().totalAmount(), "Resources of every page should be recorded");
+        assertEquals(2, registry.get("search.page.resources").summary().count(), "One sample should be recorded per page");
+        assertEquals(1, registry.get("hapi.client.requests").tag("operation", "next").tag("resource", "Condition").timer().count(),
+                "Round-trip should be timed by operation and resource");
+    }
+}
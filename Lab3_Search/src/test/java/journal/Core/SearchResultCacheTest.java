@@ -0,0 +1,109 @@
+package journal.Core;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import journal.Core.Model.CompactJsonList;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class SearchResultCacheTest {
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @Test
+    void testCompletedSearchIsServedFromCache() {
+        SearchResultCache resultCache = createCache(1024 * 1024);
+        String key = SearchResultCache.key("patients-by-name", SearchResultCache.normalize("John"));
+
+        List<String> first = collect(resultCache.stream(key, SearchResultCache::weigh, CompactJsonList::of, () -> search(events(2))));
+        List<String> second = collect(resultCache.stream(SearchResultCache.key("patients-by-name", SearchResultCache.normalize("JOHN")),
+                SearchResultCache::weigh, CompactJsonList::of, () -> search(events(2))));
+
+        assertEquals(1, searches.get(), "Repeated search with differently cased name should be served from the cache");
+        assertEquals(first.toString(), second.toString(), "Cached results should be streamed in the original order");
+    }
+
+    @Test
+    void testFailedSearchIsNotCached() {
+        SearchResultCache resultCache = createCache(1024 * 1024);
+        String key = SearchResultCache.key("patients-by-condition", "123");
+
+        assertThrows(IllegalStateException.class, () -> collect(resultCache.stream(key, SearchResultCache::weigh, CompactJsonList::of,
+                () -> search(events(1)).onCompletion().failWith(new IllegalStateException("HAPI unavailable")))));
+        collect(resultCache.stream(key, SearchResultCache::weigh, CompactJsonList::of, () -> search(events(1))));
+
+        assertEquals(2, searches.get(), "Failed search should not be cached");
+        assertEquals(1, resultCache.size(), "Completed search should be cached");
+    }
+
+    @Test
+    void testResultsLargerThanTheCacheAreNotCached() {
+        SearchResultCache resultCache = createCache(1024);
+        String key = SearchResultCache.key("patients-by-condition", "123");
+
+        List<String> patients = collect(resultCache.stream(key, SearchResultCache::weigh, CompactJsonList::of, () -> search(events(100))));
+
+        assertEquals(100, patients.size(), "Every result should still be streamed");
+        assertEquals(0, resultCache.size(), "Results exceeding the maximum weight should not be cached");
+    }
+
+    @Test
+    void testResultsLargerThanTheEntryLimitAreNotCached() {
+        SearchResultCache resultCache = createCache(1024 * 1024, 1024);
+        String key = SearchResultCache.key("patients-by-condition", "123");
+
+        List<String> patients = collect(resultCache.stream(key, SearchResultCache::weigh, CompactJsonList::of, () -> search(events(100))));
+        collect(resultCache.stream(key, SearchResultCache::weigh, CompactJsonList::of, () -> search(events(100))));
+
+        assertEquals(100, patients.size(), "Every result should still be streamed");
+        assertEquals(0, resultCache.size(), "Results exceeding the maximum entry weight should not be cached");
+        assertEquals(2, searches.get(), "Repeated search over the entry limit should run again");
+    }
+
+    @Test
+    void testInvalidateRemovesOnlyEntriesOfEndpoint() {
+        SearchResultCache resultCache = createCache(1024 * 1024);
+        collect(resultCache.stream(SearchResultCache.key("patients-by-condition", "123"), SearchResultCache::weigh, CompactJsonList::of, () -> search(events(1))));
+        collect(resultCache.stream(SearchResultCache.key("patients-by-name", "john"), SearchResultCache::weigh, CompactJsonList::of, () -> search(events(1))));
+
+        resultCache.invalidate("patients-by-condition");
+        assertEquals(1, resultCache.size(), "Only entries of the given endpoint should be invalidated");
+        resultCache.invalidateAll();
+        assertEquals(0, resultCache.size(), "Every entry should be invalidated");
+    }
+
+    private SearchResultCache createCache(long maxWeight) {
+        return createCache(maxWeight, maxWeight);
+    }
+
+    private SearchResultCache createCache(long maxWeight, long maxEntryWeight) {
+        return new SearchResultCache(new SimpleMeterRegistry(), true, new MemorySize(BigInteger.valueOf(maxWeight)),
+                new MemorySize(BigInteger.valueOf(maxEntryWeight)), Duration.ofMinutes(1));
+    }
+
+    private Multi<String> search(List<String> events) {
+        return Multi.createFrom().deferred(() -> {
+            searches.incrementAndGet();
+            return Multi.createFrom().iterable(events);
+        });
+    }
+
+    private static List<String> events(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> "{\"id\":\"19900101-" + i + "\",\"fullName\":\"John Doe\",\"city\":\"Stockholm\"}")
+                .toList();
+    }
+
+    private static <T> List<T> collect(Multi<T> multi) {
+        return multi.collect().asList().await().indefinitely();
+    }
+}
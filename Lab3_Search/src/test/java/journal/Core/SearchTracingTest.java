@@ -0,0 +1,144 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.IHttpRequest;
+import ca.uhn.fhir.rest.client.api.IHttpResponse;
+import ca.uhn.fhir.rest.gclient.IGetPage;
+import ca.uhn.fhir.rest.gclient.IGetPageTyped;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@QuarkusTest
+public class SearchTracingTest {
+    private InMemorySpanExporter exporter;
+    private OpenTelemetrySdk openTelemetry;
+    private SearchTracing tracing;
+
+    @BeforeEach
+    void setUp() {
+        exporter = InMemorySpanExporter.create();
+        openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(SdkTracerProvider.builder()
+                        .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                        .build())
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+        tracing = new SearchTracing(openTelemetry);
+    }
+
+    @Test
+    void testNextPagesAreTracedAsChildSpans() {
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(new Patient());
+        firstPage.addLink().setRelation(Bundle.LINK_NEXT).setUrl("page-2");
+        Bundle secondPage = new Bundle();
+        secondPage.addEntry().setResource(new Patient());
+        secondPage.addEntry().setResource(new Patient());
+        secondPage.addLink().setRelation(Bundle.LINK_NEXT).setUrl("page-3");
+        Bundle thirdPage = new Bundle();
+
+        IGenericClient mockClient = mock(IGenericClient.class);
+        IGetPage mockGetPage = mock(IGetPage.class);
+        IGetPageTyped<Bundle> mockNextOfFirst = mock(IGetPageTyped.class);
+        IGetPageTyped<Bundle> mockNextOfSecond = mock(IGetPageTyped.class);
+        when(mockClient.loadPage()).thenReturn(mockGetPage);
+        when(mockGetPage.next(firstPage)).thenReturn(mockNextOfFirst);
+        when(mockGetPage.next(secondPage)).thenReturn(mockNextOfSecond);
+        when(mockNextOfFirst.execute()).thenReturn(secondPage);
+        when(mockNextOfSecond.execute()).thenReturn(thirdPage);
+
+        Span request = openTelemetry.getTracer("test").spanBuilder("GET /patients-by-condition").startSpan();
+        try (Scope scope = request.makeCurrent()) {
+            new BundlePager(mockClient, 1, Infrastructure.getDefaultWorkerPool(), SearchMetrics.NONE, tracing, HapiLimiter.NONE, ResourceType.Condition)
+                    .pages(firstPage)
+                    .collect().asList()
+                    .await().indefinitely();
+        } finally {
+            request.end();
+        }
+
+        List<SpanData> pageSpans = exporter.getFinishedSpanItems().stream()
+                .filter(span -> span.getKind() == SpanKind.CLIENT)
+                .toList();
+        assertEquals(2, pageSpans.size(), "Every next page should get a span");
+        for (SpanData pageSpan : pageSpans) {
+            assertEquals(request.getSpanContext().getSpanId(), pageSpan.getParentSpanId(), "Page spans should be children of the request span");
+            assertEquals("next", pageSpan.getAttributes().get(SearchTracing.OPERATION), "Operation should be recorded");
+            assertEquals("Condition", pageSpan.getAttributes().get(SearchTracing.RESOURCE_TYPE), "Resource type should be recorded");
+        }
+        assertEquals(1L, pageSpans.get(0).getAttributes().get(SearchTracing.PAGE_INDEX), "Second page should have index 1");
+        assertEquals(2L, pageSpans.get(0).getAttributes().get(SearchTracing.PAGE_ENTRIES), "Entry count of the second page should be recorded");
+        assertEquals(2L, pageSpans.get(1).getAttributes().get(SearchTracing.PAGE_INDEX), "Third page should have index 2");
+        assertEquals(0L, pageSpans.get(1).getAttributes().get(SearchTracing.PAGE_ENTRIES), "Entry count of the third page should be recorded");
+    }
+
+    @Test
+    void testInterceptorPropagatesTraceContextAndRecordsResponseSize() {
+        IHttpRequest mockRequest = mock(IHttpRequest.class);
+        IHttpResponse mockResponse = mock(IHttpResponse.class);
+        when(mockResponse.getHeaders("Content-Length")).thenReturn(List.of("1234"));
+
+        tracing.trace(FhirOperation.Search, ResourceType.Patient, 0, () -> {
+            tracing.interceptRequest(mockRequest);
+            tracing.interceptResponse(mockResponse);
+            return new Bundle();
+        });
+
+        SpanData span = exporter.getFinishedSpanItems().get(0);
+        verify(mockRequest).addHeader(eq("traceparent"), startsWith("00-" + span.getTraceId() + "-" + span.getSpanId()));
+        assertEquals("HAPI search Patient", span.getName(), "Span should be named after operation and resource type");
+        assertEquals(1234L, span.getAttributes().get(SearchTracing.RESPONSE_BYTES), "Response size should be recorded");
+        assertEquals(0L, span.getAttributes().get(SearchTracing.PAGE_ENTRIES), "Entry count should be recorded");
+    }
+
+    @Test
+    void testInterceptorLeavesChunkedResponsesUnbuffered() throws Exception {
+        IHttpResponse mockResponse = mock(IHttpResponse.class);
+        when(mockResponse.getHeaders("Content-Length")).thenReturn(List.of());
+
+        tracing.trace(FhirOperation.Next, ResourceType.Condition, 1, () -> {
+            tracing.interceptResponse(mockResponse);
+            return new Bundle();
+        });
+
+        SpanData span = exporter.getFinishedSpanItems().get(0);
+        verify(mockResponse, never()).bufferEntity();
+        verify(mockResponse, never()).readEntity();
+        assertNull(span.getAttributes().get(SearchTracing.RESPONSE_BYTES), "Response size should be left out when unknown");
+    }
+
+    @Test
+    void testTraceRecordsFailure() {
+        assertThrows(InternalErrorException.class, () -> tracing.trace(FhirOperation.PractitionerLookup, ResourceType.Practitioner, 0, () -> {
+            throw new InternalErrorException("HAPI unavailable");
+        }));
+
+        SpanData span = exporter.getFinishedSpanItems().get(0);
+        assertEquals(StatusCode.ERROR, span.getStatus().getStatusCode(), "Failed round-trip should mark the span as failed");
+        assertEquals(1, span.getEvents().size(), "Exception should be recorded on the span");
+    }
+}
@@ -0,0 +1,204 @@
+package journal.Core;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.http.HttpServer;
+import io.vertx.mutiny.core.http.HttpServerRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.hl7.fhir.r4.model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@QuarkusTest
+public class StreamingBundleReaderTest {
+    private static final String PATIENT_SYSTEM = "http://electronichealth.se/identifier/personnummer";
+
+    private final FhirContext fhirContext = FhirContext.forR4();
+    private final Map<String, Bundle> pages = new HashMap<>();
+    private final List<HttpServerRequest> requests = new ArrayList<>();
+    private final Map<String, String> unfinishedPages = new HashMap<>();
+    private final CountDownLatch connectionClosed = new CountDownLatch(1);
+
+    private Vertx vertx;
+    private HttpServer server;
+    private String serverUrl;
+    private CloseableHttpClient httpClient;
+    private FhirClientFactory clientFactory;
+    private StreamingBundleReader reader;
+
+    @BeforeEach
+    void startServer() {
+        vertx = Vertx.vertx();
+        server = vertx.createHttpServer(new HttpServerOptions().setCompressionSupported(true))
+                .requestHandler(request -> {
+                    requests.add(request);
+                    String unfinishedPage = unfinishedPages.get(request.path());
+                    if (unfinishedPage != null) {
+                        request.connection().closeHandler(connectionClosed::countDown);
+                        request.response()
+                                .setChunked(true)
+                                .putHeader("Content-Type", "application/fhir+json")
+                                .putHeader("Content-Encoding", "identity")
+                                .writeAndForget(unfinishedPage);
+                        return;
+                    }
+                    Bundle page = pages.get(request.path());
+                    if (page == null) {
+                        request.response().setStatusCode(404).endAndForget();
+                        return;
+                    }
+                    request.response()
+                            .putHeader("Content-Type", "application/fhir+json")
+                            .endAndForget(fhirContext.newJsonParser().encodeResourceToString(page));
+                })
+                .listenAndAwait(0);
+        serverUrl = "http://localhost:" + server.actualPort() + "/fhir";
+        clientFactory = mock(FhirClientFactory.class);
+        when(clientFactory.getServerUrl()).thenReturn(serverUrl);
+        httpClient = HttpClients.createDefault();
+        reader = new StreamingBundleReader(fhirContext, new ObjectMapper(), httpClient, clientFactory,
+                SearchMetrics.NONE, SearchTracing.NONE, HapiLimiter.NONE);
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        httpClient.close();
+        server.closeAndAwait();
+        vertx.closeAndAwait();
+    }
+
+    @Test
+    void testSearchStreamsPatientsFromEveryPage() {
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(createMockCondition("Patient/p1"));
+        firstPage.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        firstPage.addLink().setRelation(Bundle.LINK_NEXT).setUrl(serverUrl + "/page-2");
+        Bundle secondPage = new Bundle();
+        secondPage.addEntry().setResource(createMockPatient("2222", "Jane Doe"));
+        pages.put("/fhir/Condition", firstPage);
+        pages.put("/fhir/page-2", secondPage);
+
+        List<Patient> patients = reader.search(ResourceType.Condition, Map.of("code", "http://snomed.info/sct|112233"), Runnable::run)
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(2, patients.size(), "Patients from both pages should be emitted");
+        assertEquals("1111", patients.get(0).getIdentifierFirstRep().getValue(), "First page should be emitted first");
+        assertEquals("John", patients.get(0).getNameFirstRep().getGivenAsSingleString(), "Patient should be fully parsed");
+        assertEquals("2222", patients.get(1).getIdentifierFirstRep().getValue(), "Second page should follow the first");
+        assertEquals("http://snomed.info/sct|112233", requests.get(0).getParam("code"), "Search parameters should be sent");
+        assertTrue(requests.get(0).getHeader("Accept-Encoding").contains("gzip"), "Compressed responses should be requested");
+    }
+
+    @Test
+    void testSearchStopsReadingWhenCancelled() {
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        firstPage.addEntry().setResource(createMockPatient("2222", "Jane Doe"));
+        firstPage.addLink().setRelation(Bundle.LINK_NEXT).setUrl(serverUrl + "/page-2");
+        pages.put("/fhir/Condition", firstPage);
+        pages.put("/fhir/page-2", new Bundle());
+
+        List<Patient> patients = reader.search(ResourceType.Condition, Map.of(), Runnable::run)
+                .select().first()
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(1, patients.size(), "Only the requested patient should be emitted");
+        assertEquals(1, requests.size(), "Next page should not be fetched after cancellation");
+    }
+
+    @Test
+    void testSearchAbortsUnfinishedPageWhenCancelled() throws InterruptedException {
+        String patient = fhirContext.newJsonParser().encodeResourceToString(createMockPatient("1111", "John Doe"));
+        unfinishedPages.put("/fhir/Condition", "{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":" + patient + "},");
+
+        List<Patient> patients = reader.search(ResourceType.Condition, Map.of(), Runnable::run)
+                .select().first()
+                .collect().asList()
+                .await().atMost(Duration.ofSeconds(5));
+
+        assertEquals(1, patients.size(), "Patient received before the cancel should be emitted");
+        assertTrue(connectionClosed.await(5, TimeUnit.SECONDS), "Unfinished page should be aborted instead of read to the end");
+    }
+
+    @Test
+    void testSearchHoldsLimiterPermitUntilPageIsRead() {
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        firstPage.addEntry().setResource(createMockPatient("2222", "Jane Doe"));
+        pages.put("/fhir/Condition", firstPage);
+        HapiLimiter limiter = new HapiLimiter(new SimpleMeterRegistry(), true, 2, 1, 4, 0.5, Duration.ofSeconds(5));
+        StreamingBundleReader limitedReader = new StreamingBundleReader(fhirContext, new ObjectMapper(), httpClient,
+                clientFactory, SearchMetrics.NONE, SearchTracing.NONE, limiter);
+
+        AssertSubscriber<Patient> subscriber = limitedReader.search(ResourceType.Condition, Map.of(), Runnable::run)
+                .subscribe().withSubscriber(AssertSubscriber.create(1));
+        subscriber.awaitItems(1);
+        assertEquals(1, limiter.inFlight(ResourceType.Condition), "Partly read page should keep its permit");
+
+        subscriber.request(2).awaitCompletion();
+        assertEquals(0, limiter.inFlight(ResourceType.Condition), "Fully read page should release its permit");
+    }
+
+    @Test
+    void testSearchReleasesLimiterPermitWhenCancelled() {
+        Bundle firstPage = new Bundle();
+        firstPage.addEntry().setResource(createMockPatient("1111", "John Doe"));
+        firstPage.addEntry().setResource(createMockPatient("2222", "Jane Doe"));
+        pages.put("/fhir/Condition", firstPage);
+        HapiLimiter limiter = new HapiLimiter(new SimpleMeterRegistry(), true, 2, 1, 4, 0.5, Duration.ofSeconds(5));
+        StreamingBundleReader limitedReader = new StreamingBundleReader(fhirContext, new ObjectMapper(), httpClient,
+                clientFactory, SearchMetrics.NONE, SearchTracing.NONE, limiter);
+
+        limitedReader.search(ResourceType.Condition, Map.of(), Runnable::run)
+                .select().first()
+                .collect().asList()
+                .await().indefinitely();
+
+        assertEquals(0, limiter.inFlight(ResourceType.Condition), "Cancelled page should release its permit");
+        assertEquals(2, limiter.limit(ResourceType.Condition), "Cancelled page should not change the limit");
+    }
+
+    @Test
+    void testSearchFailsOnServerError() {
+        assertThrows(BaseServerResponseException.class, () -> reader.search(ResourceType.Condition, Map.of(), Runnable::run)
+                .collect().asList()
+                .await().indefinitely());
+    }
+
+    private Patient createMockPatient(String identifierValue, String fullName) {
+        Patient mockPatient = new Patient();
+        mockPatient.addIdentifier().setSystem(PATIENT_SYSTEM).setValue(identifierValue);
+        mockPatient.addName().setFamily(fullName.split(" ")[1]).addGiven(fullName.split(" ")[0]);
+        return mockPatient;
+    }
+
+    private Condition createMockCondition(String subject) {
+        Condition mockCondition = new Condition();
+        mockCondition.setCode(new CodeableConcept().addCoding(new Coding().setSystem("http://snomed.info/sct").setCode("112233")));
+        mockCondition.setSubject(new Reference(subject));
+        return mockCondition;
+    }
+}
@@ -0,0 +1,61 @@
+package journal.Core;
+
+import io.quarkus.test.junit.QuarkusTest;
+import journal.Core.Model.Suggestion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class SuggestIndexTest {
+    private static final Set<Suggestion.Type> ALL_TYPES = EnumSet.allOf(Suggestion.Type.class);
+
+    private SuggestIndex suggestIndex;
+
+    @BeforeEach
+    void setup() {
+        suggestIndex = new SuggestIndex();
+        suggestIndex.maxEntries = 100;
+        suggestIndex.put(new Suggestion(Suggestion.Type.Patient, "p1", "Johan Åberg"));
+        suggestIndex.put(new Suggestion(Suggestion.Type.Patient, "p2", "Anna Johansson"));
+        suggestIndex.put(new Suggestion(Suggestion.Type.Practitioner, "d1", "Johanna Berg"));
+    }
+
+    @Test
+    void testSuggestMatchesWordPrefixesIgnoringCaseAndAccents() {
+        assertEquals(List.of("p1"), ids(suggestIndex.suggest("  ABE", ALL_TYPES, 10)), "Case and surrounding whitespace should be ignored");
+        assertEquals(List.of("p1"), ids(suggestIndex.suggest("åbe", ALL_TYPES, 10)), "Accents should be ignored");
+        assertEquals(List.of("p2"), ids(suggestIndex.suggest("anna jo", ALL_TYPES, 10)), "Queries should match across words");
+        assertEquals(List.of(), ids(suggestIndex.suggest("hansson", ALL_TYPES, 10)), "Only word prefixes should match");
+    }
+
+    @Test
+    void testSuggestOrdersByMatchedWordAndAppliesLimitAndTypes() {
+        assertEquals(List.of("p1", "d1", "p2"), ids(suggestIndex.suggest("joh", ALL_TYPES, 10)),
+                "Matches should be ordered by the matched word");
+        assertEquals(List.of("p1", "d1"), ids(suggestIndex.suggest("joh", ALL_TYPES, 2)), "Results should stop at the limit");
+        assertEquals(List.of("d1"), ids(suggestIndex.suggest("joh", EnumSet.of(Suggestion.Type.Practitioner), 10)),
+                "Other types should be skipped");
+    }
+
+    @Test
+    void testPutReplacesRenamedEntriesAndEvictsOldest() {
+        suggestIndex.put(new Suggestion(Suggestion.Type.Patient, "p1", "Johan Ek"));
+        assertEquals(List.of(), ids(suggestIndex.suggest("aberg", ALL_TYPES, 10)), "Old name should be removed");
+        assertEquals(List.of("p1"), ids(suggestIndex.suggest("ek", ALL_TYPES, 10)), "New name should be indexed");
+
+        suggestIndex.maxEntries = 3;
+        suggestIndex.put(new Suggestion(Suggestion.Type.Patient, "p4", "Erik Lund"));
+        assertEquals(3, suggestIndex.size(), "Index should stay within max entries");
+        assertEquals(List.of(), ids(suggestIndex.suggest("anna", ALL_TYPES, 10)), "Least recently stored entry should be evicted");
+    }
+
+    private static List<String> ids(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getId).toList();
+    }
+}
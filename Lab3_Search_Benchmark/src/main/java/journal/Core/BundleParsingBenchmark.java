@@ -0,0 +1,44 @@
+package journal.Core;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BundleParsingBenchmark {
+    @Param({"50"})
+    int pageSize;
+
+    @Param({"false", "true"})
+    boolean elements;
+
+    private FhirContext context;
+    private String json;
+
+    @Setup
+    public void setup() {
+        context = FhirContext.forR4();
+        IParser parser = context.newJsonParser();
+        if (elements) {
+            parser.setEncodeElements(new HashSet<>(Arrays.stream(Projection.PATIENT.elements())
+                    .map(element -> "Patient." + element)
+                    .toList()));
+        }
+        json = parser.encodeResourceToString(FhirFixtures.createPatientPage(0, pageSize));
+    }
+
+    @Benchmark
+    public Bundle parseBundle() {
+        return context.newJsonParser().parseResource(Bundle.class, json);
+    }
+}
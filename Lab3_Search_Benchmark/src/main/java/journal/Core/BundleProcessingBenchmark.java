@@ -0,0 +1,44 @@
+package journal.Core;
+
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BundleProcessingBenchmark {
+    @Param({"10"})
+    int pages;
+
+    @Param({"50"})
+    int pageSize;
+
+    @Param({"0", "2"})
+    int prefetchPages;
+
+    @Param({"0", "1000"})
+    long latencyMicros;
+
+    private HealthService healthService;
+
+    @Setup
+    public void setup() {
+        healthService = new HealthService();
+        healthService.client = StubClient.create(FhirFixtures.createPatientPages(pages, pageSize), latencyMicros);
+        healthService.prefetchPages = prefetchPages;
+        healthService.pageSize = pageSize;
+    }
+
+    @Benchmark
+    public List<Patient> processPatients() {
+        return healthService.getPatientsByConditionCodes(List.of("44054006"))
+                .collect().asList()
+                .await().indefinitely();
+    }
+}
@@ -0,0 +1,91 @@
+package journal.Core;
+
+import org.hl7.fhir.r4.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static journal.Core.HealthService.PATIENT_SYSTEM;
+import static journal.Core.HealthService.PRACTITIONER_SYSTEM;
+
+final class FhirFixtures {
+    static final String PRACTITIONER_ROLE_SYSTEM = "http://terminology.hl7.org/CodeSystem/practitioner-role";
+    private static final String[] GIVEN_NAMES = {"Anna", "Erik", "Maria", "Lars", "Karin", "Johan", "Eva", "Anders"};
+    private static final String[] FAMILY_NAMES = {"Andersson", "Johansson", "Karlsson", "Nilsson", "Eriksson", "Larsson"};
+    private static final String[] CITIES = {"Stockholm", "Göteborg", "Malmö", "Uppsala"};
+
+    private FhirFixtures() {
+    }
+
+    static Patient createPatient(int i) {
+        Patient patient = new Patient();
+        patient.setId("Patient/p" + i);
+        patient.getMeta().setVersionId("3").setLastUpdated(new java.util.Date());
+        patient.getText().setStatus(Narrative.NarrativeStatus.GENERATED).setDivAsString(
+                "<div xmlns=\"http://www.w3.org/1999/xhtml\">Patient " + i + "</div>");
+        patient.addExtension("http://hl7.org/fhir/StructureDefinition/patient-birthPlace",
+                new Address().setCity(CITIES[i % CITIES.length]));
+        patient.addIdentifier().setSystem(PATIENT_SYSTEM).setValue(String.format("19%06d-%04d", i % 1_000_000, i % 10_000));
+        patient.addIdentifier().setSystem("urn:oid:1.2.752.129.2.1.3.3").setValue("R" + i);
+        patient.addName()
+                .setUse(HumanName.NameUse.OFFICIAL)
+                .setFamily(FAMILY_NAMES[i % FAMILY_NAMES.length])
+                .addGiven(GIVEN_NAMES[i % GIVEN_NAMES.length])
+                .addGiven(GIVEN_NAMES[(i + 3) % GIVEN_NAMES.length]);
+        patient.addName().setUse(HumanName.NameUse.NICKNAME).addGiven(GIVEN_NAMES[(i + 1) % GIVEN_NAMES.length]);
+        patient.setGender(i % 2 == 0 ? Enumerations.AdministrativeGender.FEMALE : Enumerations.AdministrativeGender.MALE);
+        patient.setBirthDate(new java.util.Date(0));
+        patient.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setValue("070-" + i);
+        patient.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setUse(ContactPoint.ContactPointUse.WORK).setValue("08-" + i);
+        patient.addTelecom().setSystem(ContactPoint.ContactPointSystem.EMAIL).setValue("patient" + i + "@example.se");
+        patient.addAddress()
+                .addLine("Storgatan " + i)
+                .setCity(CITIES[i % CITIES.length])
+                .setPostalCode(String.valueOf(10000 + i % 90000))
+                .setCountry("SE");
+        patient.addAddress().setUse(Address.AddressUse.OLD).addLine("Gamla vägen " + i).setCity(CITIES[(i + 1) % CITIES.length]);
+        patient.addGeneralPractitioner(new Reference("Practitioner/d" + i % 20));
+        return patient;
+    }
+
+    static Practitioner createPractitioner(int i) {
+        Practitioner practitioner = new Practitioner();
+        practitioner.setId("Practitioner/d" + i);
+        practitioner.addIdentifier().setSystem(PRACTITIONER_SYSTEM).setValue("SE" + i);
+        practitioner.addName().setFamily(FAMILY_NAMES[i % FAMILY_NAMES.length]).addGiven(GIVEN_NAMES[i % GIVEN_NAMES.length]);
+        practitioner.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setValue("08-" + i);
+        practitioner.addTelecom().setSystem(ContactPoint.ContactPointSystem.EMAIL).setValue("doctor" + i + "@example.se");
+        return practitioner;
+    }
+
+    static PractitionerRole createPractitionerRole(String practitionerId) {
+        PractitionerRole practitionerRole = new PractitionerRole();
+        practitionerRole.setPractitioner(new Reference("Practitioner/" + practitionerId));
+        practitionerRole.addCode(new CodeableConcept().addCoding(new Coding()
+                .setSystem(PRACTITIONER_ROLE_SYSTEM)
+                .setCode("doctor")
+                .setDisplay("Doctor")));
+        return practitionerRole;
+    }
+
+    static Bundle createPatientPage(int first, int count) {
+        Bundle bundle = new Bundle();
+        bundle.setType(Bundle.BundleType.SEARCHSET);
+        for (int i = first; i < first + count; i++) {
+            bundle.addEntry().setFullUrl("Patient/p" + i).setResource(createPatient(i));
+        }
+        return bundle;
+    }
+
+    static List<Bundle> createPatientPages(int pages, int pageSize) {
+        List<Bundle> bundles = new ArrayList<>();
+        for (int page = 0; page < pages; page++) {
+            Bundle bundle = createPatientPage(page * pageSize, pageSize);
+            if (page + 1 < pages) {
+                bundle.addLink().setRelation(Bundle.LINK_NEXT).setUrl("page-" + (page + 1));
+            }
+            bundles.add(bundle);
+        }
+        return bundles;
+    }
+}
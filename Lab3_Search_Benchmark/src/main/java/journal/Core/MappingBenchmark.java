@@ -0,0 +1,46 @@
+package journal.Core;
+
+import journal.Core.Model.PatientData;
+import journal.Core.Model.PractitionerData;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.hl7.fhir.r4.model.PractitionerRole;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+    private HealthService healthService;
+    private Patient patient;
+    private Practitioner practitioner;
+
+    @Setup
+    public void setup() {
+        List<PractitionerRole> practitionerRoles = List.of(FhirFixtures.createPractitionerRole("d1"));
+        healthService = new HealthService() {
+            @Override
+            public List<PractitionerRole> getPractitionerRoleByPractitionerId(String id) {
+                return practitionerRoles;
+            }
+        };
+        patient = FhirFixtures.createPatient(1);
+        practitioner = FhirFixtures.createPractitioner(1);
+    }
+
+    @Benchmark
+    public PatientData getPatientData() {
+        return healthService.getPatientData(patient);
+    }
+
+    @Benchmark
+    public PractitionerData getPractitionerData() {
+        return healthService.getPractitionerData(practitioner);
+    }
+}
@@ -0,0 +1,46 @@
+package journal.Core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import journal.Core.Model.CompactJsonList;
+import journal.Core.Model.CompactPatientList;
+import journal.Core.Model.PatientData;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prints the retained heap per patient of a list of {@link PatientData}, of the same patients in the
+ * {@link CompactPatientList} the result cache stores, and of them as serialized SSE events, plain and
+ * in a {@link CompactJsonList}, as measured by JOL.
+ */
+public final class PatientFootprint {
+    private PatientFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        HealthService healthService = new HealthService();
+        SearchEventWriter eventWriter = new SearchEventWriter(new ObjectMapper());
+        List<PatientData> patients = new ArrayList<>(count);
+        List<String> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Patient patient = FhirFixtures.createPatient(i);
+            patients.add(healthService.getPatientData(patient));
+            events.add(eventWriter.writePatient(patient));
+        }
+        CompactPatientList compactPatients = CompactPatientList.of(patients);
+        CompactJsonList compactEvents = CompactJsonList.of(events);
+
+        print("List<PatientData>", GraphLayout.parseInstance(patients).totalSize(), count);
+        print("CompactPatientList", GraphLayout.parseInstance(compactPatients).totalSize(), count);
+        System.out.printf("%-20s %10.1f bytes/patient%n", "estimatedBytes()", (double) compactPatients.estimatedBytes() / count);
+        print("List<String>", GraphLayout.parseInstance(events).totalSize(), count);
+        print("CompactJsonList", GraphLayout.parseInstance(compactEvents).totalSize(), count);
+    }
+
+    private static void print(String name, long bytes, int count) {
+        System.out.printf("%-20s %10.1f bytes/patient%n", name, (double) bytes / count);
+    }
+}
@@ -0,0 +1,67 @@
+package journal.Core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.hl7.fhir.r4.model.PractitionerRole;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    private HealthService healthService;
+    private ObjectMapper objectMapper;
+    private SearchEventWriter eventWriter;
+    private Patient patient;
+    private Practitioner practitioner;
+    private Projection idAndName;
+
+    @Setup
+    public void setup() {
+        List<PractitionerRole> practitionerRoles = List.of(FhirFixtures.createPractitionerRole("d1"));
+        healthService = new HealthService() {
+            @Override
+            public List<PractitionerRole> getPractitionerRoleByPractitionerId(String id) {
+                return practitionerRoles;
+            }
+        };
+        objectMapper = new ObjectMapper();
+        eventWriter = new SearchEventWriter(objectMapper);
+        patient = FhirFixtures.createPatient(1);
+        practitioner = FhirFixtures.createPractitioner(1);
+        idAndName = Projection.parse("id,fullName", Projection.PATIENT);
+    }
+
+    @Benchmark
+    public String reflective() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(healthService.getPatientData(patient));
+    }
+
+    @Benchmark
+    public String direct() {
+        return eventWriter.writePatient(patient);
+    }
+
+    @Benchmark
+    public String directIdAndName() {
+        return eventWriter.writePatient(patient, idAndName);
+    }
+
+    @Benchmark
+    public String reflectivePractitioner() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(healthService.getPractitionerData(practitioner));
+    }
+
+    @Benchmark
+    public String directPractitioner() {
+        return eventWriter.writePractitioner(practitioner, Projection.PRACTITIONER, healthService::getRole);
+    }
+}
@@ -0,0 +1,67 @@
+package journal.Core;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.gclient.IGetPage;
+import ca.uhn.fhir.rest.gclient.IGetPageTyped;
+import ca.uhn.fhir.rest.gclient.IQuery;
+import ca.uhn.fhir.rest.gclient.ISort;
+import ca.uhn.fhir.rest.gclient.IUntypedQuery;
+import org.hl7.fhir.r4.model.Bundle;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Minimal {@link IGenericClient} that answers every search with the first of a fixed list of pages
+ * and follows next links through the rest, optionally sleeping to simulate a server round-trip.
+ */
+final class StubClient implements InvocationHandler {
+    private final Bundle firstPage;
+    private final Map<Bundle, Bundle> nextPages = new IdentityHashMap<>();
+    private final long latencyNanos;
+
+    private StubClient(List<Bundle> pages, long latencyMicros) {
+        this.firstPage = pages.get(0);
+        for (int i = 0; i + 1 < pages.size(); i++) {
+            nextPages.put(pages.get(i), pages.get(i + 1));
+        }
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    }
+
+    static IGenericClient create(List<Bundle> pages, long latencyMicros) {
+        return (IGenericClient) proxy(new StubClient(pages, latencyMicros), IGenericClient.class);
+    }
+
+    private static Object proxy(InvocationHandler handler, Class<?>... interfaces) {
+        return Proxy.newProxyInstance(StubClient.class.getClassLoader(), interfaces, handler);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "search" -> proxy(this, IUntypedQuery.class, IQuery.class, ISort.class);
+            case "loadPage" -> proxy(this, IGetPage.class);
+            case "execute" -> roundTrip(firstPage);
+            case "next" -> proxy((page, pageMethod, pageArgs) -> "execute".equals(pageMethod.getName())
+                    ? roundTrip(nextPages.get((Bundle) args[0]))
+                    : page, IGetPageTyped.class);
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "StubClient";
+            default -> method.getReturnType().isInstance(proxy) ? proxy : null;
+        };
+    }
+
+    private Bundle roundTrip(Bundle page) {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+        return page;
+    }
+}